@@ -0,0 +1,70 @@
+package winstone;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Logger#log} with parameters, both when the level is disabled (what callers pay for
+ * building the arguments) and when it is enabled (formatting, with a handler that drops the record).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerBenchmark {
+
+    private int port = 8080;
+
+    @Setup
+    public void setUp() {
+        java.util.logging.Logger logger = java.util.logging.Logger.getLogger("winstone");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {}
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+        Logger.init(Level.INFO);
+    }
+
+    /** Takes the primitive overload, so nothing is boxed or allocated. */
+    @Benchmark
+    public void disabled() {
+        Logger.log(Level.FINER, Launcher.RESOURCES, "Launcher.ThreadName", port);
+    }
+
+    @Benchmark
+    public void disabledSupplier() {
+        Logger.log(Level.FINER, Launcher.RESOURCES, "HostConfig.WebRootExists", () -> "/var/cache/" + port);
+    }
+
+    /** The string concatenation that callers used to do before calling. */
+    @Benchmark
+    public void disabledConcatenation() {
+        Logger.log(Level.FINER, Launcher.RESOURCES, "Launcher.ThreadName", port + "");
+    }
+
+    @Benchmark
+    public void enabled() {
+        Logger.log(Level.INFO, Launcher.RESOURCES, "Launcher.StartupOK", "Winstone", port);
+    }
+}
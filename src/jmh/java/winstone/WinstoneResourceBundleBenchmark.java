@@ -0,0 +1,46 @@
+package winstone;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Message lookup and parameter substitution, used by every log call that is enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WinstoneResourceBundleBenchmark {
+
+    private final String[][] replacements = {{"###webapp###", "jenkins"}, {"###host###", "localhost"}};
+
+    @Benchmark
+    public String getString() {
+        return Launcher.RESOURCES.getString("Launcher.ShutdownOK");
+    }
+
+    @Benchmark
+    public String getStringWithParameter() {
+        return Launcher.RESOURCES.getString("HostConfig.WebRootExists", "/var/cache/jenkins/war");
+    }
+
+    @Benchmark
+    public String getStringWithParameters() {
+        return Launcher.RESOURCES.getString("Launcher.StartupOK", new Object[] {"Winstone", 8080});
+    }
+
+    @Benchmark
+    public String globalReplace() {
+        return WinstoneResourceBundle.globalReplace("logs/###host###/###webapp###_access.log", replacements);
+    }
+}
@@ -0,0 +1,88 @@
+package winstone.accesslog;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.server.ConnectionMetaData;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Just enough of a Jetty request and response for the access log to format, without a server.
+ */
+final class MockExchange {
+    private MockExchange() {}
+
+    static Request request() {
+        HttpFields headers = HttpFields.build()
+                .add("Host", "localhost:8080")
+                .add("Referer", "http://localhost:8080/job/winstone/")
+                .add("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0")
+                .asImmutable();
+        HttpURI uri = HttpURI.from("http://localhost:8080/job/winstone/lastBuild/console");
+        InetSocketAddress remote = new InetSocketAddress("192.168.0.17", 53124);
+        ConnectionMetaData metaData = proxy(ConnectionMetaData.class, (name, args) -> {
+            switch (name) {
+                case "getProtocol":
+                    return "HTTP/1.1";
+                case "getHttpVersion":
+                    return HttpVersion.HTTP_1_1;
+                case "getRemoteSocketAddress":
+                    return remote;
+                default:
+                    return null;
+            }
+        });
+        long begin = System.nanoTime();
+        return proxy(Request.class, (name, args) -> {
+            switch (name) {
+                case "getMethod":
+                    return "GET";
+                case "getHttpURI":
+                    return uri;
+                case "getHeaders":
+                    return headers;
+                case "getConnectionMetaData":
+                    return metaData;
+                case "getBeginNanoTime":
+                case "getHeadersNanoTime":
+                    return begin;
+                case "getId":
+                    return "1";
+                default:
+                    return null;
+            }
+        });
+    }
+
+    static Response response() {
+        return proxy(Response.class, (name, args) -> "getStatus".equals(name) ? 200 : null);
+    }
+
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(
+                MockExchange.class.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+                    Object value = answer.answer(method.getName(), args);
+                    if (value == null && method.getReturnType().isPrimitive()) {
+                        Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        }
+                        if (returnType == void.class) {
+                            return null;
+                        }
+                        if (returnType == long.class) {
+                            return 0L;
+                        }
+                        return 0;
+                    }
+                    return value;
+                }));
+    }
+}
@@ -0,0 +1,103 @@
+package winstone.accesslog;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formatting and writing one access log line, the cost every request pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleAccessLoggerBenchmark {
+
+    @Param({"combined", "json", "binary"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private Path dir;
+    private SimpleAccessLogger logger;
+    private Request request;
+    private Response response;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("access-log-benchmark");
+        Map<String, String> args = new HashMap<>();
+        args.put("simpleAccessLogger.file", dir.resolve("access.log").toString());
+        args.put("simpleAccessLogger.format", format);
+        args.put("simpleAccessLogger.async", String.valueOf(async));
+        args.put("simpleAccessLogger.asyncOverflowPolicy", "drop");
+        logger = new SimpleAccessLogger("benchmark", args);
+        logger.start();
+        request = MockExchange.request();
+        response = MockExchange.response();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        logger.stop();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public void log() {
+        logger.log(request, response);
+    }
+
+    @Benchmark
+    public void format(LogBufferHolder holder) {
+        holder.format.format(LogBuffer.get(), request, response);
+    }
+
+    /**
+     * The encoding step alone, without any I/O.
+     */
+    @State(Scope.Thread)
+    public static class LogBufferHolder {
+        AccessLogFormat format;
+
+        @Setup
+        public void setUp(SimpleAccessLoggerBenchmark benchmark) {
+            switch (benchmark.format) {
+                case "json":
+                    format = new JsonAccessLogFormat();
+                    break;
+                case "binary":
+                    format = new BinaryAccessLogFormat();
+                    break;
+                default:
+                    format = AccessLogTemplate.compile(
+                            "###ip### - ###user### ###time### \"###uriLine###\" ###status### ###size###"
+                                    + " \"###referer###\" \"###userAgent###\"");
+            }
+        }
+    }
+}
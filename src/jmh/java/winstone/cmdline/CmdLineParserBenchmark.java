@@ -0,0 +1,61 @@
+package winstone.cmdline;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a typical command line, and reading the options back, as done at startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CmdLineParserBenchmark {
+
+    private final List<Option<?>> options = Option.all(Option.class);
+    private final String[] argv = {
+        "--webroot=/var/cache/jenkins/war",
+        "--httpPort=8080",
+        "--httpListenAddress=0.0.0.0",
+        "--prefix=/jenkins",
+        "--accessLoggerClassName=winstone.accesslog.SimpleAccessLogger",
+        "--simpleAccessLogger.format=combined",
+        "--simpleAccessLogger.async=true",
+        "--sessionTimeout=60",
+        "--debug=5"
+    };
+    private final Map<String, String> parsed = parse();
+
+    private Map<String, String> parse() {
+        try {
+            return new CmdLineParser(options).parse(argv, "warfile");
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> parseCommandLine() {
+        return parse();
+    }
+
+    @Benchmark
+    public long readOptions() {
+        return Option.HTTP_PORT.get(parsed)
+                + Option.SESSION_TIMEOUT.get(parsed)
+                + (Option.SIMPLE_ACCESS_LOGGER_ASYNC.get(parsed) ? 1 : 0)
+                + Option.PREFIX.get(parsed).length();
+    }
+}
@@ -34,7 +34,7 @@ public abstract class AbstractSecuredConnectorFactory implements ConnectorFactor
     protected String keystorePassword;
 
     protected void configureSsl(Map<String, String> args, Server server) throws IOException {
-        try {
+        try (StartupTimeline.Phase phase = StartupTimeline.of(server).begin("keystore")) {
             File keyStore = Option.HTTPS_KEY_STORE.get(args);
             String pwd = Option.HTTPS_KEY_STORE_PASSWORD.get(args);
 
@@ -87,15 +87,17 @@ public abstract class AbstractSecuredConnectorFactory implements ConnectorFactor
             // the KeyManagerFactory needs the KeyPassword because it will access the
             // individual key(s)
             kmf.init(keystore, keystorePassword.toCharArray());
-            Logger.log(Level.FINEST, SSL_RESOURCES, "HttpsListener.KeyCount", keystore.size() + "");
-            for (Enumeration<String> e = keystore.aliases(); e.hasMoreElements(); ) {
-                String alias = e.nextElement();
-                Logger.log(
-                        Level.FINEST,
-                        SSL_RESOURCES,
-                        "HttpsListener.KeyFound",
-                        alias,
-                        keystore.getCertificate(alias) + "");
+            if (Logger.isLoggable(Level.FINEST)) {
+                Logger.log(Level.FINEST, SSL_RESOURCES, "HttpsListener.KeyCount", keystore.size());
+                for (Enumeration<String> e = keystore.aliases(); e.hasMoreElements(); ) {
+                    String alias = e.nextElement();
+                    Logger.log(
+                            Level.FINEST,
+                            SSL_RESOURCES,
+                            "HttpsListener.KeyFound",
+                            alias,
+                            keystore.getCertificate(alias));
+                }
             }
 
             SslContextFactory.Server ssl = new SslContextFactory.Server();
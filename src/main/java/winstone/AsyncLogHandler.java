@@ -0,0 +1,197 @@
+package winstone;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import winstone.cmdline.OverflowPolicy;
+
+/**
+ * Hands log records over to a writer thread that publishes them to the actual handlers (usually the
+ * {@link java.util.logging.ConsoleHandler}, which writes to the {@code --logfile} when there is
+ * one), so that threads that log do not wait for the console or the disk.
+ *
+ * <p>The queue is bounded; what happens when it is full is decided by the {@link OverflowPolicy}.
+ * {@link #drain} writes out what is queued, and is called when logging is shut down. Records
+ * published after that are written on the thread that logs them, but only once the queue has been
+ * written out, so that they stay in order and the handlers are called by one thread at a time.
+ */
+final class AsyncLogHandler extends Handler {
+
+    /** Minimum time between two reports of dropped records. */
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Queued by {@link #drain} to wake the writer thread up, never written. */
+    private static final LogRecord WAKE_UP = new LogRecord(Level.OFF, "");
+
+    private final List<Handler> delegates;
+    private final BlockingQueue<LogRecord> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    AsyncLogHandler(List<Handler> delegates, int queueSize, OverflowPolicy overflowPolicy) {
+        this.delegates = List.copyOf(delegates);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.overflowPolicy = overflowPolicy;
+        this.thread = new Thread(this::run, "Winstone log writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    List<Handler> getDelegates() {
+        return delegates;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        // the caller is inferred from the stack trace on first use, so it has to happen on this thread
+        record.getSourceClassName();
+        if (Thread.currentThread() == thread) {
+            // logged by a handler while writing, e.g. a failure; queuing it could block the only consumer
+            write(record);
+            return;
+        }
+        if (closed) {
+            writeAfterClose(record);
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP:
+                if (!queue.offer(record)) {
+                    dropped.increment();
+                }
+                break;
+            case SPILL:
+                if (!queue.offer(record)) {
+                    write(record);
+                }
+                break;
+            case BLOCK:
+            default:
+                try {
+                    queue.put(record);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    write(record);
+                }
+        }
+    }
+
+    private void run() {
+        long lastDropReport = System.nanoTime();
+        try {
+            while (true) {
+                boolean stopping = closed;
+                LogRecord record = stopping ? queue.poll() : queue.poll(1, TimeUnit.SECONDS);
+                if (record != null && record != WAKE_UP) {
+                    write(record);
+                }
+                long now = System.nanoTime();
+                if (now - lastDropReport >= DROP_REPORT_INTERVAL_NANOS && reportDrops()) {
+                    lastDropReport = now;
+                }
+                if (record == null && stopping) {
+                    reportDrops();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() writes what is left
+        }
+    }
+
+    private boolean reportDrops() {
+        long drops = dropped.sumThenReset();
+        if (drops == 0) {
+            return false;
+        }
+        write(new LogRecord(Level.WARNING, Launcher.RESOURCES.getString("AsyncLogHandler.Dropped", drops)));
+        return true;
+    }
+
+    private void write(LogRecord record) {
+        for (Handler delegate : delegates) {
+            try {
+                delegate.publish(record);
+            } catch (RuntimeException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for the queued records to be written, after which records are
+     * written on the thread that logs them.
+     */
+    void drain(long timeoutMillis) {
+        closed = true;
+        queue.offer(WAKE_UP);
+        if (timeoutMillis > 0) {
+            try {
+                thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!thread.isAlive()) {
+            writeAfterClose(null);
+        }
+        flush();
+    }
+
+    /**
+     * Waits for the writer thread to end, then writes what it left in the queue (records of threads
+     * that saw {@link #closed} just before it was set) and the given record. Synchronized, so that
+     * the threads logging after {@link #drain} take turns.
+     */
+    private synchronized void writeAfterClose(LogRecord record) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogRecord queued = queue.poll(); queued != null; queued = queue.poll()) {
+            if (queued != WAKE_UP) {
+                write(queued);
+            }
+        }
+        reportDrops();
+        if (record != null) {
+            write(record);
+        }
+    }
+
+    @Override
+    public void flush() {
+        for (Handler delegate : delegates) {
+            delegate.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        drain(0);
+        // stops it waiting for records, what it leaves is written here
+        thread.interrupt();
+        writeAfterClose(null);
+        for (Handler delegate : delegates) {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package winstone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A directory of extracted WARs shared by the Winstone processes of a host ({@code --extractionCache}).
+ * Each WAR is extracted once into a subdirectory named after the SHA-256 of its content, so
+ * instances running the same WAR share the same files whatever the WAR is called.
+ *
+ * <p>Extraction happens under an exclusive lock on {@code <hash>.lock}, so that concurrent
+ * processes wait for the first one instead of extracting the same WAR side by side; the
+ * {@link WarExtractor#MANIFEST} is written last and marks a complete extraction. The extracted
+ * files are used as the webroot directly, or hard-linked into an instance's own webroot (see
+ * {@link #link}), so they are made read-only once extracted.
+ */
+final class ExtractionCache {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Hex digits of a SHA-256. */
+    private static final int HASH_LENGTH = 64;
+
+    private static final Set<PosixFilePermission> WRITE_PERMISSIONS = EnumSet.of(
+            PosixFilePermission.OWNER_WRITE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
+
+    private final Path dir;
+    private final int threads;
+
+    /**
+     * @param threads passed on to the {@link WarExtractor}
+     */
+    ExtractionCache(File dir, int threads) {
+        this.dir = dir.toPath().toAbsolutePath();
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the directory the WAR is extracted into, extracting it first if no process has yet.
+     */
+    File get(File warfile) throws IOException {
+        Files.createDirectories(dir);
+        String hash = hash(warfile);
+        Path extracted = dir.resolve(hash);
+        if (Files.isRegularFile(extracted.resolve(WarExtractor.MANIFEST))) {
+            return extracted.toFile();
+        }
+        // file locks are held by the process, so threads of the same process have to take turns first
+        synchronized (ExtractionCache.class) {
+            try (FileChannel lockFile = FileChannel.open(
+                            dir.resolve(hash + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = lockFile.lock()) {
+                if (!Files.isRegularFile(extracted.resolve(WarExtractor.MANIFEST))) {
+                    // left over by a process that did not finish
+                    deleteRecursive(extracted);
+                    long start = System.nanoTime();
+                    int files = new WarExtractor(warfile, extracted.toFile(), threads).extract();
+                    makeReadOnly(extracted);
+                    Logger.log(
+                            Level.FINE,
+                            Launcher.RESOURCES,
+                            "HostConfig.ExtractedToCache",
+                            files,
+                            extracted,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            }
+        }
+        return extracted.toFile();
+    }
+
+    /**
+     * Takes the write permissions off the extracted files, which their hard links share, so that a
+     * webapp cannot change the files of the other instances. Skipped without POSIX permissions: the
+     * read-only attribute of Windows would also keep the links from being deleted.
+     */
+    private static void makeReadOnly(Path extracted) throws IOException {
+        if (!Files.getFileStore(extracted).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(extracted)) {
+            files = stream.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+            permissions.removeAll(WRITE_PERMISSIONS);
+            Files.setPosixFilePermissions(file, permissions);
+        }
+    }
+
+    /**
+     * Fills {@code webroot} with hard links to the extracted files, or copies where the file system
+     * does not support links (e.g. the cache is on another volume). The manifest is left out, so
+     * that the webroot is never updated in place, which would change the shared files.
+     */
+    static void link(File extracted, File webroot) throws IOException {
+        Path source = extracted.toPath();
+        Path target = webroot.toPath();
+        boolean canLink = true;
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(source)) {
+            files = stream.collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Path relative = source.relativize(file);
+            Path copy = target.resolve(relative.toString());
+            if (Files.isDirectory(file)) {
+                Files.createDirectories(copy);
+            } else if (!relative.toString().equals(WarExtractor.MANIFEST)) {
+                Files.deleteIfExists(copy);
+                if (canLink) {
+                    try {
+                        Files.createLink(copy, file);
+                        continue;
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        canLink = false;
+                    }
+                }
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of the WAR. It is remembered in {@code <SHA-256 of the path>.source} with
+     * the size and modification time of the WAR, so that the WAR is only read again once they change.
+     */
+    private String hash(File warfile) throws IOException {
+        Path war = warfile.toPath().toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(war, BasicFileAttributes.class);
+        String stamp = attributes.size() + " " + attributes.lastModifiedTime().toMillis() + " ";
+        MessageDigest digest = newDigest();
+        digest.update(war.toString().getBytes(StandardCharsets.UTF_8));
+        Path source = dir.resolve(HexFormat.of().formatHex(digest.digest()) + ".source");
+        try {
+            String remembered = Files.readString(source, StandardCharsets.UTF_8);
+            if (remembered.startsWith(stamp) && remembered.length() == stamp.length() + HASH_LENGTH) {
+                return remembered.substring(stamp.length());
+            }
+        } catch (NoSuchFileException e) {
+            // not seen yet
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.FINE, null, "Failed to read " + source, e);
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(war)) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        // written aside first, so that a concurrent start never reads a partial hash
+        Path tmp = Files.createTempFile(dir, "source", ".tmp");
+        try {
+            Files.writeString(tmp, stamp + hash, StandardCharsets.UTF_8);
+            Files.move(tmp, source, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.FINE, null, "Failed to write " + source, e);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return hash;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteRecursive(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(dir)) {
+            files = stream.collect(Collectors.toList());
+        }
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Files.delete(files.get(i));
+        }
+    }
+}
@@ -13,13 +13,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.nio.file.Files;
-import java.nio.file.InvalidPathException;
-import java.nio.file.Path;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
@@ -27,8 +23,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import org.eclipse.jetty.ee9.webapp.WebAppContext;
 import org.eclipse.jetty.ee9.websocket.server.config.JettyWebSocketServletContainerInitializer;
@@ -36,6 +31,8 @@ import org.eclipse.jetty.security.LoginService;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import winstone.accesslog.DispatchTimeHandler;
+import winstone.accesslog.SimpleAccessLogger;
 import winstone.cmdline.CompressionScheme;
 import winstone.cmdline.Option;
 
@@ -62,7 +59,7 @@ public class HostConfiguration {
         this.webapps = new Hashtable<>();
         this.commonLibCL = commonLibCL;
 
-        try {
+        try (StartupTimeline.Phase phase = StartupTimeline.of(server).begin("realm")) {
             // Build the realm
             Class<? extends LoginService> realmClass =
                     Option.REALM_CLASS_NAME.get(this.args, LoginService.class, commonLibCL);
@@ -81,7 +78,26 @@ public class HostConfiguration {
             // trim off the trailing '/' that Jetty doesn't like
             prefix = prefix.substring(0, prefix.length() - 1);
         }
-        WebAppContext webAppContext = create(getWebRoot(webroot, warfile), prefix);
+        boolean extractWar = warfile == null || Option.EXTRACT_WAR.get(this.args);
+        File webAppRoot;
+        if (extractWar) {
+            try (StartupTimeline.Phase phase = StartupTimeline.of(server).begin("webroot")) {
+                webAppRoot = getWebRoot(webroot, warfile);
+            }
+        } else {
+            if (!warfile.isFile()) {
+                throw new WinstoneException(Launcher.RESOURCES.getString("HostConfig.WarFileInvalid", warfile));
+            }
+            Logger.log(Level.INFO, Launcher.RESOURCES, "HostConfig.ServingFromWar", warfile);
+            webAppRoot = warfile;
+        }
+        WebAppContext webAppContext = create(webAppRoot, prefix);
+        if (!extractWar) {
+            // Jetty mounts the WAR as a zip file system, which reads the central directory once; only
+            // WEB-INF is copied out, so that the class loader can open the jars in WEB-INF/lib
+            webAppContext.setExtractWAR(false);
+            webAppContext.setCopyWebInf(true);
+        }
         RequestLog requestLog = configureAccessLog("webapp");
         if (requestLog != null) {
             server.setRequestLog(requestLog);
@@ -118,13 +134,16 @@ public class HostConfiguration {
             default:
                 throw new IllegalArgumentException("Unexpected compression scheme: " + compressionScheme);
         }
+        if (requestLog instanceof SimpleAccessLogger && ((SimpleAccessLogger) requestLog).needsDispatchTime()) {
+            server.setHandler(new DispatchTimeHandler(server.getHandler()));
+        }
 
         Logger.log(
                 Level.FINER,
                 Launcher.RESOURCES,
                 "HostConfig.InitComplete",
-                this.webapps.size() + "",
-                this.webapps.keySet() + "");
+                this.webapps.size(),
+                this.webapps.keySet());
     }
 
     private void loadBuiltinMimeTypes() {
@@ -162,6 +181,7 @@ public class HostConfiguration {
     }
 
     private WebAppContext create(File app, String prefix) {
+        StartupTimeline timeline = StartupTimeline.of(server);
         WebAppContext wac = new WebAppContext(app.getAbsolutePath(), prefix) {
             @Override
             public void preConfigure() throws Exception {
@@ -180,6 +200,14 @@ public class HostConfiguration {
                 // TODO ee10 getServletHandler().setDecodeAmbiguousURIs(true);
             }
 
+            @Override
+            public void configure() throws Exception {
+                // web.xml, fragments and annotation scanning
+                try (StartupTimeline.Phase phase = timeline.begin("webapp configure")) {
+                    super.configure();
+                }
+            }
+
             @Override
             public void postConfigure() throws Exception {
                 super.postConfigure();
@@ -194,6 +222,7 @@ public class HostConfiguration {
             }
         };
         wac.setServer(server);
+        wac.addEventListener(timeline.listener("webapp"));
         JettyWebSocketServletContainerInitializer.configure(wac, null);
         wac.getSecurityHandler().setLoginService(loginService);
         wac.setThrowUnavailableOnStartupException(
@@ -239,106 +268,70 @@ public class HostConfiguration {
                 throw new WinstoneException(Launcher.RESOURCES.getString("HostConfig.WarFileInvalid", warfile));
             }
 
+            File cacheDir = Option.EXTRACTION_CACHE.get(this.args);
+            int threads = Option.WAR_EXTRACTION_THREADS.get(this.args);
+            if (cacheDir != null && requestedWebroot == null) {
+                // the shared extraction is the webroot
+                return new ExtractionCache(cacheDir, threads).get(warfile);
+            }
+
             // Get the webroot folder (or a temp dir if none supplied)
             File unzippedDir;
             if (requestedWebroot != null) {
                 unzippedDir = requestedWebroot;
             } else {
-                File tempFile = File.createTempFile("dummy", "dummy");
-                String userName = System.getProperty("user.name");
-                unzippedDir = new File(
-                        tempFile.getParent(),
-                        (userName != null
-                                        ? WinstoneResourceBundle.globalReplace(
-                                                        userName, new String[][] {{"/", ""}, {"\\", ""}, {",", ""}})
-                                                + "/"
-                                        : "")
-                                + "winstone/"
-                                + warfile.getName());
-
-                try {
-                    Files.delete(tempFile.toPath());
-                } catch (Exception ex) {
-                    Logger.logDirectMessage(Level.WARNING, null, "Failed To delete dummy file", ex);
-                }
+                unzippedDir = new File(getUserTempDir(), warfile.getName());
             }
             if (unzippedDir.exists()) {
                 if (!unzippedDir.isDirectory()) {
                     throw new WinstoneException(
                             Launcher.RESOURCES.getString("HostConfig.WebRootNotDirectory", unzippedDir.getPath()));
                 } else {
-                    Logger.log(
-                            Level.FINER,
-                            Launcher.RESOURCES,
-                            "HostConfig.WebRootExists",
-                            unzippedDir.getCanonicalPath());
+                    if (Logger.isLoggable(Level.FINER)) {
+                        Logger.log(
+                                Level.FINER,
+                                Launcher.RESOURCES,
+                                "HostConfig.WebRootExists",
+                                unzippedDir.getCanonicalPath());
+                    }
                 }
             }
 
+            WebrootTrash.collectLeftovers(unzippedDir.toPath());
+
             // check consistency and if out-of-sync, recreate
             File timestampFile = new File(unzippedDir, ".timestamp");
-            if (!timestampFile.exists() || Math.abs(timestampFile.lastModified() - warfile.lastModified()) > 1000) {
-                // contents of the target directory is inconsistent from the war.
-                deleteRecursive(unzippedDir);
+            if (timestampFile.exists() && Math.abs(timestampFile.lastModified() - warfile.lastModified()) <= 1000) {
+                // files are up to date
+                return unzippedDir;
+            }
+            WarExtractor extractor = cacheDir == null ? new WarExtractor(warfile, unzippedDir, threads) : null;
+            if (extractor == null || !extractor.readManifest()) {
+                // contents of the target directory is inconsistent from the war, move it out of the way
+                if (!WebrootTrash.discard(unzippedDir.toPath())) {
+                    deleteContents(unzippedDir);
+                }
                 try {
                     Files.createDirectories(unzippedDir.toPath());
                 } catch (Exception ex) {
                     Logger.logDirectMessage(
                             Level.WARNING, null, "Failed to recreate dirs " + unzippedDir.getAbsolutePath(), ex);
                 }
-            } else {
-                // files are up to date
-                return unzippedDir;
             }
+            // else only what changed since the previous extraction is written
 
-            // Iterate through the files
-            byte[] buffer = new byte[8192];
-            try (JarFile warArchive = new JarFile(warfile)) {
-                for (Enumeration<JarEntry> e = warArchive.entries(); e.hasMoreElements(); ) {
-                    JarEntry element = e.nextElement();
-                    if (element.isDirectory()) {
-                        continue;
-                    }
-                    String elemName = element.getName();
-
-                    // If archive date is newer than unzipped file, overwrite
-                    File outFile = new File(unzippedDir, elemName);
-                    Path outPath = outFile.toPath();
-
-                    // Disallow unzipping files outside the target dir
-                    if (!outPath.normalize().startsWith(unzippedDir.toPath().normalize())) {
-                        throw new IOException("Bad zip entry: " + elemName);
-                    }
-
-                    if (outFile.exists() && (outFile.lastModified() > warfile.lastModified())) {
-                        continue;
-                    }
-                    try {
-                        Path parent = outPath.getParent();
-                        if (parent == null) {
-                            Logger.logDirectMessage(Level.WARNING, null, outPath + "has no parent dir ", null);
-                        } else {
-                            Files.createDirectories(parent);
-                        }
-                    } catch (IOException | InvalidPathException | SecurityException ex) {
-                        Logger.logDirectMessage(
-                                Level.WARNING,
-                                null,
-                                "Failed to create dirs "
-                                        + outFile.getParentFile().getAbsolutePath(),
-                                null);
-                    }
-
-                    // Copy out the extracted file
-                    try (InputStream inContent = warArchive.getInputStream(element);
-                            OutputStream outStream = new FileOutputStream(outFile)) {
-                        int readBytes = inContent.read(buffer);
-                        while (readBytes != -1) {
-                            outStream.write(buffer, 0, readBytes);
-                            readBytes = inContent.read(buffer);
-                        }
-                    }
-                }
+            if (extractor == null) {
+                ExtractionCache.link(new ExtractionCache(cacheDir, threads).get(warfile), unzippedDir);
+            } else {
+                long start = System.nanoTime();
+                int extracted = extractor.extract();
+                Logger.log(
+                        Level.FINE,
+                        Launcher.RESOURCES,
+                        "HostConfig.WarExtractionComplete",
+                        extracted,
+                        extractor.getRemovedCount(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             }
 
             // extraction completed
@@ -355,13 +348,47 @@ public class HostConfiguration {
         }
     }
 
-    private void deleteRecursive(File dir) {
+    /**
+     * The {@code winstone} directory of the current user in the temp directory, where WARs are
+     * extracted when no webroot is given.
+     */
+    static File getUserTempDir() throws IOException {
+        File tempFile = File.createTempFile("dummy", "dummy");
+        String userName = System.getProperty("user.name");
+        File dir = new File(
+                tempFile.getParent(),
+                (userName != null
+                                ? WinstoneResourceBundle.globalReplace(
+                                                userName, new String[][] {{"/", ""}, {"\\", ""}, {",", ""}})
+                                        + "/"
+                                : "")
+                        + "winstone");
+
+        try {
+            Files.delete(tempFile.toPath());
+        } catch (Exception ex) {
+            Logger.logDirectMessage(Level.WARNING, null, "Failed To delete dummy file", ex);
+        }
+        return dir;
+    }
+
+    /**
+     * Empties the directory but keeps it, so that a webroot given as a symbolic link stays one.
+     * Symbolic links inside are deleted, never followed.
+     */
+    private void deleteContents(File dir) {
         File[] children = dir.listFiles();
         if (children != null) {
             for (File child : children) {
                 deleteRecursive(child);
             }
         }
+    }
+
+    private void deleteRecursive(File dir) {
+        if (!Files.isSymbolicLink(dir.toPath())) {
+            deleteContents(dir);
+        }
         try {
             Files.deleteIfExists(dir.toPath());
         } catch (Exception ex) {
@@ -40,8 +40,8 @@ public class HostGroup {
                 Level.FINER,
                 Launcher.RESOURCES,
                 "HostGroup.InitSingleComplete",
-                this.hostConfigs.size() + "",
-                this.hostConfigs.keySet() + "");
+                this.hostConfigs.size(),
+                this.hostConfigs.keySet());
     }
 
     public HostConfiguration getHostByName(String hostname) {
@@ -56,7 +56,9 @@ public class HostGroup {
 
     protected void initHost(String hostname, ClassLoader commonLibCL, Map<String, String> args) throws IOException {
         Logger.log(Level.FINER, Launcher.RESOURCES, "HostGroup.DeployingHost", hostname);
-        HostConfiguration config = new HostConfiguration(server, hostname, commonLibCL, args);
-        this.hostConfigs.put(hostname, config);
+        try (StartupTimeline.Phase phase = StartupTimeline.of(server).begin("host " + hostname)) {
+            HostConfiguration config = new HostConfiguration(server, hostname, commonLibCL, args);
+            this.hostConfigs.put(hostname, config);
+        }
     }
 }
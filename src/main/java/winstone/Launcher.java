@@ -10,7 +10,6 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.jenkins.lib.support_log_formatter.SupportLogFormatter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
@@ -19,9 +18,14 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
+import java.net.JarURLConnection;
 import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
@@ -31,10 +35,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -74,6 +84,12 @@ public class Launcher implements Runnable {
     private static int SHUTDOWN_TIMEOUT =
             Integer.parseInt(System.getProperty("winstone.Launcher.loggingShutdownTimeoutSeconds", "30")) * 1000;
 
+    /** The {@code --logfile} standard output and standard error are redirected to, if any. */
+    private static volatile LogFileOutputStream logFile;
+
+    /** The lock on the embedded WAR in use, held for the life of the process. */
+    private static FileChannel embeddedWarLock;
+
     private Thread controlThread;
     public static final WinstoneResourceBundle RESOURCES = new WinstoneResourceBundle("winstone.LocalStrings");
     private int controlPort;
@@ -84,12 +100,24 @@ public class Launcher implements Runnable {
 
     private boolean shutdownComplete;
 
+    /** Set when the log records are written by a background thread ({@code --logAsync}). */
+    private AsyncLogHandler asyncLogHandler;
+
     /**
      * Constructor - initialises the web app, object pools, control port and the
      * available protocol listeners.
      */
-    @SuppressFBWarnings(value = "LG_LOST_LOGGER_DUE_TO_WEAK_REFERENCE", justification = "TODO needs triage")
     public Launcher(Map<String, String> args) throws IOException {
+        this(args, new StartupTimeline());
+    }
+
+    /**
+     * @param timeline
+     *      records the startup phases, possibly including some that happened before the launcher
+     *      was created (e.g. the parsing of the command line)
+     */
+    @SuppressFBWarnings(value = "LG_LOST_LOGGER_DUE_TO_WEAK_REFERENCE", justification = "TODO needs triage")
+    public Launcher(Map<String, String> args, StartupTimeline timeline) throws IOException {
         boolean success = false;
         /*
          * As described in JDK-8161253, there is no way to control the order of execution of
@@ -120,9 +148,9 @@ public class Launcher implements Runnable {
          * application shutdown, at which point it proceeds to shut down logging facilities as the
          * last action prior to process termination.
          */
-        installLogHandler();
-        try {
-            Logger.log(Level.ALL, RESOURCES, "Launcher.StartupArgs", args + "");
+        installLogHandler(args);
+        try (StartupTimeline.Phase launch = timeline.begin("launcher")) {
+            Logger.log(Level.ALL, RESOURCES, "Launcher.StartupArgs", args);
 
             this.args = args;
             this.controlPort = Option.CONTROL_PORT.get(args);
@@ -134,33 +162,40 @@ public class Launcher implements Runnable {
             Logger.log(Level.FINER, RESOURCES, "Launcher.UsingJavaHome", javaHome.getPath());
 
             // Set up common lib class loader
-            File libFolder = Option.COMMON_LIB_FOLDER.get(args, new File("lib"));
-            if (libFolder.exists() && libFolder.isDirectory()) {
-                Logger.log(Level.FINER, RESOURCES, "Launcher.UsingCommonLib", libFolder.getCanonicalPath());
-                File[] children = libFolder.listFiles();
-                if (children != null) {
-                    for (File aChildren : children) {
-                        if (aChildren.getName().endsWith(".jar")
-                                || aChildren.getName().endsWith(".zip")) {
-                            jars.add(aChildren.toURI().toURL());
-                            Logger.log(Level.FINER, RESOURCES, "Launcher.AddedCommonLibJar", aChildren.getName());
+            ClassLoader commonLibCL;
+            try (StartupTimeline.Phase phase = timeline.begin("common lib")) {
+                File libFolder = Option.COMMON_LIB_FOLDER.get(args, new File("lib"));
+                if (libFolder.exists() && libFolder.isDirectory()) {
+                    if (Logger.isLoggable(Level.FINER)) {
+                        Logger.log(Level.FINER, RESOURCES, "Launcher.UsingCommonLib", libFolder.getCanonicalPath());
+                    }
+                    File[] children = libFolder.listFiles();
+                    if (children != null) {
+                        for (File aChildren : children) {
+                            if (aChildren.getName().endsWith(".jar")
+                                    || aChildren.getName().endsWith(".zip")) {
+                                jars.add(aChildren.toURI().toURL());
+                                Logger.log(Level.FINER, RESOURCES, "Launcher.AddedCommonLibJar", aChildren.getName());
+                            }
                         }
                     }
+                } else {
+                    Logger.log(Level.FINER, RESOURCES, "Launcher.NoCommonLib");
                 }
-            } else {
-                Logger.log(Level.FINER, RESOURCES, "Launcher.NoCommonLib");
-            }
 
-            ClassLoader commonLibCL =
-                    new URLClassLoader(jars.toArray(new URL[0]), getClass().getClassLoader());
+                commonLibCL = new URLClassLoader(jars.toArray(new URL[0]), getClass().getClassLoader());
 
-            Logger.log(Level.ALL, RESOURCES, "Launcher.CLClassLoader", commonLibCL.toString());
+                Logger.log(Level.ALL, RESOURCES, "Launcher.CLClassLoader", commonLibCL);
+            }
 
-            int qtpMaxThread = Option.QTP_MAXTHREADS.get(args);
-            QueuedThreadPool queuedThreadPool =
-                    qtpMaxThread > 0 ? new QueuedThreadPool(qtpMaxThread) : new QueuedThreadPool();
-            queuedThreadPool.setName("Jetty (winstone)");
-            this.server = new Server(queuedThreadPool);
+            try (StartupTimeline.Phase phase = timeline.begin("thread pool")) {
+                int qtpMaxThread = Option.QTP_MAXTHREADS.get(args);
+                QueuedThreadPool queuedThreadPool =
+                        qtpMaxThread > 0 ? new QueuedThreadPool(qtpMaxThread) : new QueuedThreadPool();
+                queuedThreadPool.setName("Jetty (winstone)");
+                this.server = new Server(queuedThreadPool);
+            }
+            this.server.addBean(timeline);
 
             // add LowResourceMonitor
             LowResourceMonitor lowResourceMonitor = new LowResourceMonitor(this.server);
@@ -168,13 +203,17 @@ public class Launcher implements Runnable {
             this.server.addBean(lowResourceMonitor);
 
             // Open the web apps
-            this.hostGroup = new HostGroup(server, commonLibCL, args);
+            try (StartupTimeline.Phase phase = timeline.begin("hosts")) {
+                this.hostGroup = new HostGroup(server, commonLibCL, args);
+            }
 
             List<Connector> connectors = new ArrayList<>();
             // Create connectors (http & https)
-            spawnListener(HTTP_LISTENER_CLASS, connectors);
-            spawnListener(HTTPS_LISTENER_CLASS, connectors);
-            spawnListener(HTTP2_LISTENER_CLASS, connectors);
+            try (StartupTimeline.Phase phase = timeline.begin("connectors")) {
+                spawnListener(HTTP_LISTENER_CLASS, connectors);
+                spawnListener(HTTPS_LISTENER_CLASS, connectors);
+                spawnListener(HTTP2_LISTENER_CLASS, connectors);
+            }
 
             lowResourceMonitor.setMonitoredConnectors(connectors);
 
@@ -189,7 +228,7 @@ public class Launcher implements Runnable {
                     java.util.logging.Logger.getLogger("org.eclipse.jetty.ee9.annotations.AnnotationParser");
             logger.setLevel(Level.SEVERE);
 
-            try {
+            try (StartupTimeline.Phase phase = timeline.begin("server")) {
                 server.start();
                 writePortToFileIfNeeded();
 
@@ -197,10 +236,22 @@ public class Launcher implements Runnable {
                 throw new IOException("Failed to start Jetty", e);
             }
 
-            this.controlThread = new Thread(this, RESOURCES.getString("Launcher.ThreadName", "" + this.controlPort));
+            this.controlThread = new Thread(this, RESOURCES.getString("Launcher.ThreadName", this.controlPort));
             this.controlThread.setDaemon(false);
             this.controlThread.start();
 
+            launch.close();
+            Logger.log(Level.FINE, RESOURCES, "Launcher.StartupTimeline", timeline);
+            File startupReport = Option.STARTUP_REPORT.get(args);
+            if (startupReport != null) {
+                try {
+                    timeline.writeReport(startupReport);
+                } catch (IOException e) {
+                    Logger.log(Level.WARNING, RESOURCES, "Launcher.StartupReportError", startupReport, e);
+                }
+            }
+            // webapp reloads are not part of the startup
+            timeline.finish();
             success = true;
         } finally {
             if (!success) {
@@ -221,9 +272,9 @@ public class Launcher implements Runnable {
 
     /**
      * Install our custom log handler that waits for application shutdown to complete before
-     * running.
+     * running. With {@code --logAsync}, the other handlers are moved behind an {@link AsyncLogHandler}.
      */
-    private void installLogHandler() {
+    private void installLogHandler(Map<String, String> args) {
         java.util.logging.Logger root = java.util.logging.Logger.getLogger("");
         /*
          * By installing our custom log handler before all others, we ensure that logging facilities
@@ -234,8 +285,26 @@ public class Launcher implements Runnable {
             root.removeHandler(h);
         }
         root.addHandler(new LogHandler(this));
+        boolean async = Option.LOG_ASYNC.get(args);
+        List<Handler> delegates = new ArrayList<>();
         for (Handler h : handlers) {
-            root.addHandler(h);
+            if (h instanceof AsyncLogHandler) {
+                // installed by an earlier launcher in this JVM
+                this.asyncLogHandler = (AsyncLogHandler) h;
+            } else if (async && !(h instanceof LogHandler)) {
+                delegates.add(h);
+            } else {
+                root.addHandler(h);
+            }
+        }
+        if (async && this.asyncLogHandler == null) {
+            this.asyncLogHandler = new AsyncLogHandler(
+                    delegates, Option.LOG_ASYNC_QUEUE_SIZE.get(args), Option.LOG_ASYNC_OVERFLOW_POLICY.get(args));
+        } else {
+            delegates.forEach(root::addHandler);
+        }
+        if (this.asyncLogHandler != null) {
+            root.addHandler(this.asyncLogHandler);
         }
     }
 
@@ -259,8 +328,8 @@ public class Launcher implements Runnable {
         @Override
         public void close() {
             try {
+                long target = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) + SHUTDOWN_TIMEOUT;
                 synchronized (launcher) {
-                    long target = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) + SHUTDOWN_TIMEOUT;
                     while (!launcher.isShutdownComplete()) {
                         long timeoutMillis = target - TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
                         if (timeoutMillis > 0) {
@@ -270,6 +339,11 @@ public class Launcher implements Runnable {
                         }
                     }
                 }
+                // what was logged during the shutdown is written within the same timeout
+                if (launcher.asyncLogHandler != null) {
+                    launcher.asyncLogHandler.drain(
+                            Math.max(0, target - TimeUnit.NANOSECONDS.toMillis(System.nanoTime())));
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -327,11 +401,18 @@ public class Launcher implements Runnable {
      * catch and log any errors locally before rethrowing.
      */
     protected Connector spawnListener(String listenerClassName, List<Connector> connectors) throws IOException {
-        try {
+        // "winstone.HttpsConnectorFactory" is created in the "https" phase and binds in "bind https"
+        String name = listenerClassName
+                .substring(listenerClassName.lastIndexOf('.') + 1)
+                .replace("ConnectorFactory", "")
+                .toLowerCase(Locale.ROOT);
+        StartupTimeline timeline = StartupTimeline.of(server);
+        try (StartupTimeline.Phase phase = timeline.begin(name)) {
             ConnectorFactory connectorFactory = (ConnectorFactory)
                     Class.forName(listenerClassName).getDeclaredConstructor().newInstance();
             Connector connector = connectorFactory.start(args, server);
             if (connector != null) {
+                connector.addEventListener(timeline.listener("bind " + name));
                 connectors.add(connector);
             }
             return connector;
@@ -359,7 +440,7 @@ public class Launcher implements Runnable {
                     RESOURCES,
                     "Launcher.StartupOK",
                     RESOURCES.getString("ServerVersion"),
-                    (this.controlPort > 0 ? "" + this.controlPort : RESOURCES.getString("Launcher.ControlDisabled")));
+                    this.controlPort > 0 ? this.controlPort : RESOURCES.getString("Launcher.ControlDisabled"));
 
             // Enter the main loop
             while (!interrupted) {
@@ -416,7 +497,7 @@ public class Launcher implements Runnable {
                 inControl = new ObjectInputStream(inSocket);
                 String host = inControl.readUTF();
                 String prefix = inControl.readUTF();
-                Logger.log(Level.INFO, RESOURCES, "Launcher.ReloadRequestReceived", host + prefix);
+                Logger.log(Level.INFO, RESOURCES, "Launcher.ReloadRequestReceived", () -> host + prefix);
                 HostConfiguration hostConfig = this.hostGroup.getHostByName(host);
                 hostConfig.reloadWebApp(prefix);
             }
@@ -464,7 +545,11 @@ public class Launcher implements Runnable {
      * listener thread. For now, just shut it down with a control-C.
      */
     public static void main(String[] argv) throws IOException {
-        Map<String, String> args = getArgsFromCommandLine(argv);
+        StartupTimeline timeline = new StartupTimeline();
+        Map<String, String> args;
+        try (StartupTimeline.Phase phase = timeline.begin("args")) {
+            args = getArgsFromCommandLine(argv);
+        }
 
         if (System.getProperty("java.util.logging.config.file") == null) {
             for (Handler h : java.util.logging.Logger.getLogger("").getHandlers()) {
@@ -480,7 +565,9 @@ public class Launcher implements Runnable {
         }
 
         // Check for embedded war
-        deployEmbeddedWarfile(args);
+        try (StartupTimeline.Phase phase = timeline.begin("embedded war")) {
+            deployEmbeddedWarfile(args);
+        }
 
         // Check for embedded warfile
         if (!Option.WEBROOT.isIn(args) && !Option.WARFILE.isIn(args)) {
@@ -490,7 +577,11 @@ public class Launcher implements Runnable {
 
         // Launch
         try {
-            new Launcher(args);
+            if (Option.TRAINING_RUN.get(args)) {
+                System.exit(TrainingRun.run(args, timeline));
+            }
+            TrainingRun.checkArchive(args);
+            new Launcher(args, timeline);
         } catch (Throwable err) {
             err.printStackTrace();
             Logger.log(Level.SEVERE, RESOURCES, "Launcher.ContainerStartupError", err);
@@ -520,43 +611,134 @@ public class Launcher implements Runnable {
         return args;
     }
 
+    /**
+     * Copies the WAR embedded in the launcher jar to {@code embedded-<key>.war} in the user's temp
+     * directory, where the key identifies its content, and extracts it into a stable webroot next
+     * to it, in {@code embedded-<key>}. A restart with the same WAR finds both in place: the copy
+     * is skipped, and so is the extraction, because the copy keeps its modification time. The copy
+     * is written to a temp file and moved into place, so a crash never leaves a truncated WAR under
+     * the reused name.
+     *
+     * <p>Every process holds a shared lock on {@code embedded-<key>.lock} for as long as it runs, so
+     * the copies of other builds are deleted only once no process uses them any more.
+     */
     protected static void deployEmbeddedWarfile(Map<String, String> args) throws IOException {
         String embeddedWarfileName = RESOURCES.getString("Launcher.EmbeddedWarFile");
-        try (InputStream embeddedWarfile = Launcher.class.getResourceAsStream(embeddedWarfileName)) {
-            if (embeddedWarfile == null) {
-                return;
+        URL embeddedWarfile = Launcher.class.getResource(embeddedWarfileName);
+        if (embeddedWarfile == null) {
+            return;
+        }
+        File tempDir = HostConfiguration.getUserTempDir();
+        try {
+            Files.createDirectories(tempDir.toPath());
+        } catch (Exception ex) {
+            Logger.logDirectMessage(Level.WARNING, null, "Failed to mkdirs " + tempDir.getAbsolutePath(), ex);
+        }
+
+        long size = -1;
+        String key = null;
+        URLConnection connection = embeddedWarfile.openConnection();
+        if (connection instanceof JarURLConnection) {
+            // the CRC and size of the entry identify the content without reading it
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry.getCrc() != -1 && entry.getSize() != -1) {
+                size = entry.getSize();
+                key = Long.toHexString(entry.getCrc()) + "-" + size;
             }
-            File tempWarfile = File.createTempFile("embedded", ".war").getAbsoluteFile();
-            File parentTempWarFile = tempWarfile.getParentFile();
+        }
+        if (key == null) {
+            key = sha256(embeddedWarfile);
+        }
+        String name = "embedded-" + key;
+        lockEmbeddedWarfile(new File(tempDir, name + ".lock"));
+        File warfile = new File(tempDir, name + ".war");
+
+        if (!warfile.isFile() || (size != -1 && warfile.length() != size)) {
+            Logger.log(Level.FINER, RESOURCES, "Launcher.CopyingEmbeddedWarfile", warfile.getAbsolutePath());
+            // copied aside first, so that a concurrent start never sees a partial file
+            Path tmp = Files.createTempFile(tempDir.toPath(), "embedded", ".tmp");
             try {
-                Files.createDirectories(parentTempWarFile.toPath());
-            } catch (Exception ex) {
-                Logger.logDirectMessage(
-                        Level.WARNING, null, "Failed to mkdirs " + parentTempWarFile.getAbsolutePath(), ex);
+                try (InputStream in = embeddedWarfile.openStream()) {
+                    Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                try {
+                    Files.move(
+                            tmp, warfile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, warfile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
             }
-            tempWarfile.deleteOnExit();
+        }
+        deleteUnusedEmbeddedWarfiles(tempDir, name);
 
-            String embeddedWebroot = RESOURCES.getString("Launcher.EmbeddedWebroot");
-            File tempWebroot = new File(tempWarfile.getParentFile(), embeddedWebroot);
-            try {
-                Files.createDirectories(tempWebroot.toPath());
-            } catch (Exception ex) {
-                Logger.logDirectMessage(Level.WARNING, null, "Failed to mkdirs " + tempWebroot.getAbsolutePath(), ex);
-            }
+        Option.WARFILE.put(args, warfile.getAbsolutePath());
+        Option.WEBROOT.put(args, new File(tempDir, name).getAbsolutePath());
+    }
+
+    /**
+     * Takes a shared lock on the copy in use, which is only released when the process exits. It is
+     * taken before the copy is looked at, so another process never deletes a copy about to be used.
+     */
+    private static synchronized void lockEmbeddedWarfile(File lockFile) throws IOException {
+        if (embeddedWarLock != null) {
+            return;
+        }
+        FileChannel channel = FileChannel.open(
+                lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.lock(0, Long.MAX_VALUE, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        embeddedWarLock = channel;
+    }
 
-            Logger.log(Level.FINER, RESOURCES, "Launcher.CopyingEmbeddedWarfile", tempWarfile.getAbsolutePath());
-            try (OutputStream out = new FileOutputStream(tempWarfile, true)) {
-                // TODO use Files#copy(InputStream,Path,CopyOption...)
-                int read;
-                byte[] buffer = new byte[2048];
-                while ((read = embeddedWarfile.read(buffer)) != -1) {
-                    out.write(buffer, 0, read);
+    /**
+     * Removes the copies and webroots left by other builds of the launcher that no running process
+     * holds a lock on, so that the temp directory does not grow with every upgrade. The lock files
+     * stay: deleting one could let a process starting at that moment lock a file no longer there.
+     */
+    private static void deleteUnusedEmbeddedWarfiles(File tempDir, String name) {
+        String[] lockFiles = tempDir.list((dir, other) -> other.startsWith("embedded-")
+                && other.endsWith(".lock")
+                && !other.equals(name + ".lock"));
+        if (lockFiles == null) {
+            return;
+        }
+        for (String lockFile : lockFiles) {
+            String other = lockFile.substring(0, lockFile.length() - ".lock".length());
+            try (FileChannel channel = FileChannel.open(
+                            new File(tempDir, lockFile).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    FileLock lock = channel.tryLock()) {
+                if (lock == null) {
+                    // still in use by another process
+                    continue;
                 }
+                Files.deleteIfExists(new File(tempDir, other + ".war").toPath());
+                Path webroot = new File(tempDir, other).toPath();
+                if (!WebrootTrash.discard(webroot)) {
+                    Logger.logDirectMessage(Level.FINE, null, "Failed to delete old embedded webroot " + webroot, null);
+                }
+            } catch (IOException | OverlappingFileLockException e) {
+                Logger.logDirectMessage(Level.FINE, null, "Failed to delete old embedded warfile " + other, e);
             }
+        }
+    }
 
-            Option.WARFILE.put(args, tempWarfile.getAbsolutePath());
-            Option.WARFILE.put(args, tempWebroot.getAbsolutePath());
+    private static String sha256(URL resource) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
+        try (InputStream in = new DigestInputStream(resource.openStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
     @SuppressFBWarnings(value = "PATH_TRAVERSAL_IN", justification = "false positive, args come from command line")
@@ -572,13 +754,31 @@ public class Launcher implements Runnable {
             } catch (InvalidPathException e) {
                 throw new IOException(e);
             }
-            OutputStream outputStream =
-                    Files.newOutputStream(logPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            LogFileOutputStream outputStream = new LogFileOutputStream(
+                    new RotatingFileOutputStream(
+                            logPath,
+                            Option.LOGFILE_ROTATE_SIZE.get(args) * 1024L * 1024L,
+                            Option.LOGFILE_ROTATE_INTERVAL.get(args),
+                            Option.LOGFILE_MAX_HISTORY.get(args),
+                            Option.LOGFILE_COMPRESS.get(args)),
+                    Option.LOGFILE_FLUSH_SIZE.get(args),
+                    Option.LOGFILE_FLUSH_INTERVAL.get(args));
             // TODO: Ideally, should change this to UTF-8, but this could cause problems for Windows users when
             // appending to existing logs.
             PrintStream printStream = new PrintStream(outputStream, false, Charset.defaultCharset());
             System.setOut(printStream);
             System.setErr(printStream);
+            synchronized (Launcher.class) {
+                if (logFile == null) {
+                    // write out what is buffered when the JVM exits; what is logged after that is written directly
+                    Runtime.getRuntime()
+                            .addShutdownHook(new Thread(() -> logFile.stopBuffering(), "Log file shutdown"));
+                } else {
+                    // parsed again; a handler may still hold on to the previous stream
+                    logFile.stopBuffering();
+                }
+                logFile = outputStream;
+            }
         }
         Logger.init(Level.parse(String.valueOf(logLevel)), showThrowingThread);
     }
@@ -0,0 +1,163 @@
+package winstone;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import winstone.cmdline.RotationInterval;
+
+/**
+ * Moves a log file aside when it is rotated, and takes care of the segments it leaves behind. A
+ * segment is named {@code <name>.<yyyy-MM-dd_HH-mm-ss>} after the time the file was opened; gzip
+ * compression and the removal of segments beyond the retention count happen on a shared low
+ * priority background thread.
+ */
+public final class LogArchiver {
+
+    private static final DateTimeFormatter SEGMENT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private static final ExecutorService ARCHIVER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Log archiver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /** How long a file that could not be rotated is written to before rotating is tried again. */
+    public static final long ROTATION_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Path file;
+    private final int maxHistory;
+    private final boolean compress;
+    private final Pattern segmentPattern;
+
+    /**
+     * @param file the log file
+     * @param maxHistory how many rotated segments to keep, or {@code < 0} to keep all of them
+     * @param compress whether to gzip rotated segments
+     */
+    public LogArchiver(Path file, int maxHistory, boolean compress) {
+        this.file = file.toAbsolutePath();
+        this.maxHistory = maxHistory;
+        this.compress = compress;
+        this.segmentPattern = Pattern.compile(Pattern.quote(this.file.getFileName().toString())
+                + "\\.\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}(\\.\\d+)?(\\.gz)?");
+    }
+
+    /**
+     * The first hour or day boundary after {@code now}, or {@link Long#MAX_VALUE} for
+     * {@link RotationInterval#NONE}.
+     */
+    public static long nextRotation(RotationInterval interval, long now) {
+        ZonedDateTime time = Instant.ofEpochMilli(now).atZone(ZoneId.systemDefault());
+        switch (interval) {
+            case HOURLY:
+                return time.truncatedTo(ChronoUnit.HOURS).plusHours(1).toInstant().toEpochMilli();
+            case DAILY:
+                return time.truncatedTo(ChronoUnit.DAYS).plusDays(1).toInstant().toEpochMilli();
+            case NONE:
+            default:
+                return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Renames the (closed) log file to a segment name, then compresses and prunes in the background.
+     *
+     * @param openedAt when the file was opened, which names the segment
+     */
+    public void rotate(LocalDateTime openedAt) throws IOException {
+        String base = this.file.getFileName() + "." + SEGMENT_FORMAT.format(openedAt);
+        Path segment = this.file.resolveSibling(base);
+        for (int i = 1;
+                Files.exists(segment) || Files.exists(segment.resolveSibling(segment.getFileName() + ".gz"));
+                i++) {
+            segment = this.file.resolveSibling(base + "." + i);
+        }
+        Files.move(this.file, segment, StandardCopyOption.ATOMIC_MOVE);
+        Path rotated = segment;
+        ARCHIVER.execute(() -> archive(rotated));
+    }
+
+    /**
+     * Reports that the file could not be rotated. The warning is logged from the background thread,
+     * because the caller may be in the middle of writing the very log it would go to.
+     */
+    public void reportRotationFailure(IOException e) {
+        ARCHIVER.execute(() -> Logger.logDirectMessage(
+                Level.WARNING, null, "Failed to rotate " + this.file + ", will keep writing to it and retry", e));
+    }
+
+    private void archive(Path segment) {
+        if (this.compress) {
+            Path gz = segment.resolveSibling(segment.getFileName() + ".gz");
+            Path tmp = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+            try {
+                try (InputStream in = Files.newInputStream(segment);
+                        OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                    in.transferTo(out);
+                }
+                Files.move(tmp, gz, StandardCopyOption.ATOMIC_MOVE);
+                Files.delete(segment);
+            } catch (IOException e) {
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to compress " + segment, e);
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // the uncompressed segment is still there
+                }
+            }
+        }
+        if (this.maxHistory >= 0) {
+            prune();
+        }
+    }
+
+    private void prune() {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.file.getParent())) {
+            for (Path candidate : stream) {
+                if (this.segmentPattern.matcher(candidate.getFileName().toString()).matches()) {
+                    segments.add(candidate);
+                }
+            }
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.WARNING, null, "Failed to list old segments of " + this.file, e);
+            return;
+        }
+        segments.sort(Comparator.comparingLong(LogArchiver::lastModified).reversed());
+        for (Path old : segments.subList(Math.min(this.maxHistory, segments.size()), segments.size())) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to delete " + old, e);
+            }
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package winstone;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code --logfile} that standard output and standard error are redirected to. Writes are
+ * collected in a buffer that is written to the {@link RotatingFileOutputStream} once it holds
+ * {@code flushSize} bytes, or by a background thread once the oldest byte in it has waited for
+ * {@code flushInterval} milliseconds.
+ *
+ * <p>{@link #flush()} only writes the buffer out when it is overdue: the
+ * {@link java.util.logging.ConsoleHandler} flushes after every record, which would otherwise undo
+ * the buffering. {@link #stopBuffering()} writes the buffer out for good, and is called when the
+ * JVM shuts down.
+ */
+final class LogFileOutputStream extends OutputStream {
+
+    private final RotatingFileOutputStream file;
+    private final byte[] buffer;
+    private final long flushIntervalNanos;
+    private int count;
+    private long firstBufferedAt;
+    private boolean buffering;
+    private IOException failure;
+
+    /**
+     * @param flushSize bytes to collect before writing, or {@code <= 0} to write through
+     * @param flushInterval maximum time in milliseconds a byte waits in the buffer, or {@code <= 0}
+     *     to write through
+     */
+    LogFileOutputStream(RotatingFileOutputStream file, int flushSize, long flushInterval) {
+        this.file = file;
+        this.buffering = flushSize > 0 && flushInterval > 0;
+        this.buffer = new byte[buffering ? flushSize : 0];
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushInterval, 0));
+        if (buffering) {
+            Thread flusher = new Thread(this::run, "Log file flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        rethrowFailure();
+        if (!buffering) {
+            file.write(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count) {
+            writeBuffer();
+            if (len >= buffer.length) {
+                file.write(b, off, len);
+                return;
+            }
+        }
+        if (count == 0) {
+            firstBufferedAt = System.nanoTime();
+            notifyAll();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        rethrowFailure();
+        if (count > 0 && System.nanoTime() - firstBufferedAt >= flushIntervalNanos) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Writes out what is buffered; from then on every write goes straight to the file.
+     */
+    synchronized void stopBuffering() {
+        buffering = false;
+        notifyAll();
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopBuffering();
+        file.close();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        try {
+            file.write(buffer, 0, count);
+        } finally {
+            // a failed batch is not retried, so that a full disk does not pile up memory
+            count = 0;
+        }
+    }
+
+    /**
+     * Reports a failure of the flusher thread to the next caller; {@link java.io.PrintStream}
+     * turns it into its error flag.
+     */
+    private void rethrowFailure() throws IOException {
+        IOException failure = this.failure;
+        if (failure != null) {
+            this.failure = null;
+            throw failure;
+        }
+    }
+
+    private synchronized void run() {
+        try {
+            while (buffering) {
+                if (count == 0) {
+                    wait();
+                    continue;
+                }
+                long remaining = firstBufferedAt + flushIntervalNanos - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    continue;
+                }
+                try {
+                    writeBuffer();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            // the JVM is going away; stopBuffering() writes what is left
+        }
+    }
+}
@@ -7,6 +7,7 @@
 package winstone;
 
 import java.io.PrintStream;
+import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 
@@ -114,6 +115,59 @@ public class Logger {
         }
     }
 
+    /**
+     * Only calls {@code param} if the level is enabled, for values that are expensive to compute.
+     */
+    public static void log(Level level, WinstoneResourceBundle resources, String messageKey, Supplier<?> param) {
+        if (!LOGGER.isLoggable(level)) {
+            return;
+        } else {
+            logInternal(level, resources.getString(messageKey, param.get()), null);
+        }
+    }
+
+    public static void log(Level level, WinstoneResourceBundle resources, String messageKey, int param) {
+        if (!LOGGER.isLoggable(level)) {
+            return;
+        } else {
+            logInternal(level, resources.getString(messageKey, param), null);
+        }
+    }
+
+    public static void log(Level level, WinstoneResourceBundle resources, String messageKey, long param) {
+        if (!LOGGER.isLoggable(level)) {
+            return;
+        } else {
+            logInternal(level, resources.getString(messageKey, param), null);
+        }
+    }
+
+    /**
+     * Same as the varargs variant, without allocating the array when the level is disabled.
+     */
+    public static void log(
+            Level level, WinstoneResourceBundle resources, String messageKey, Object param0, Object param1) {
+        if (!LOGGER.isLoggable(level)) {
+            return;
+        } else {
+            logInternal(level, resources.getString(messageKey, new Object[] {param0, param1}), null);
+        }
+    }
+
+    public static void log(
+            Level level,
+            WinstoneResourceBundle resources,
+            String messageKey,
+            Object param0,
+            Object param1,
+            Object param2) {
+        if (!LOGGER.isLoggable(level)) {
+            return;
+        } else {
+            logInternal(level, resources.getString(messageKey, new Object[] {param0, param1, param2}), null);
+        }
+    }
+
     public static void log(
             Level level, WinstoneResourceBundle resources, String messageKey, Object param, Throwable error) {
         if (!LOGGER.isLoggable(level)) {
@@ -146,6 +200,14 @@ public class Logger {
         }
     }
 
+    /**
+     * For guarding log statements whose parameters cannot be computed lazily, e.g. because doing so
+     * throws a checked exception.
+     */
+    public static boolean isLoggable(Level level) {
+        return LOGGER.isLoggable(level);
+    }
+
     public static void logDirectMessage(Level level, String streamName, String message, Throwable error) {
         if (!LOGGER.isLoggable(level)) {
             return;
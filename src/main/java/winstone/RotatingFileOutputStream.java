@@ -0,0 +1,170 @@
+package winstone;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import winstone.cmdline.RotationInterval;
+
+/**
+ * An append-only file that is rotated once it exceeds a size and/or when an hour or day has passed.
+ * Rotated segments are handed to a {@link LogArchiver}, so a write only ever pays for a rename and
+ * an open; compression and cleanup happen in the background.
+ *
+ * <p>If the file cannot be moved aside (e.g. it is locked on Windows, or the directory is not
+ * writable), writing continues into the same file and rotating is retried after
+ * {@link LogArchiver#ROTATION_RETRY_MILLIS}; the failure is reported once.
+ *
+ * <p>If the file is deleted or moved away by someone else (e.g. an external {@code logrotate}), a
+ * new one is created at the same path; this is checked at most once a second.
+ *
+ * <p>The stream itself is unbuffered; callers are expected to write whole lines or batches.
+ */
+public class RotatingFileOutputStream extends OutputStream {
+
+    private static final long FILE_CHECK_INTERVAL_MILLIS = 1000;
+
+    private final Path file;
+    private final long maxSize;
+    private final RotationInterval interval;
+    private final LogArchiver archiver;
+
+    private FileChannel channel;
+    private long size;
+    private LocalDateTime openedAt;
+    private long nextRotation;
+    private Object fileKey;
+    private long nextFileCheck;
+    private long nextRotationAttempt;
+    private boolean rotationFailed;
+
+    /**
+     * @param file the file to append to, created if missing
+     * @param maxSize rotate before a write would make the file larger than this many bytes, or
+     *     {@code <= 0} to not rotate by size
+     * @param interval rotate at the start of every hour or day
+     * @param maxHistory how many rotated segments to keep, or {@code < 0} to keep all of them
+     * @param compress whether to gzip rotated segments
+     */
+    public RotatingFileOutputStream(
+            Path file, long maxSize, RotationInterval interval, int maxHistory, boolean compress) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.maxSize = maxSize;
+        this.interval = interval;
+        this.archiver = new LogArchiver(this.file, maxHistory, compress);
+        open();
+    }
+
+    private void open() throws IOException {
+        this.channel = FileChannel.open(
+                this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.size = this.channel.size();
+        this.openedAt = LocalDateTime.now();
+        this.nextRotation = LogArchiver.nextRotation(this.interval, System.currentTimeMillis());
+        this.fileKey = currentFileKey();
+        this.nextFileCheck = System.currentTimeMillis() + FILE_CHECK_INTERVAL_MILLIS;
+    }
+
+    /**
+     * The key of the file at our path, {@code null} if there is none or the file system has no keys.
+     */
+    private Object currentFileKey() {
+        try {
+            return Files.readAttributes(this.file, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            return this.fileKey;
+        }
+    }
+
+    /**
+     * Starts a new file if the one we write to is no longer at our path.
+     */
+    private void checkFile() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now < this.nextFileCheck) {
+            return;
+        }
+        this.nextFileCheck = now + FILE_CHECK_INTERVAL_MILLIS;
+        boolean gone = this.fileKey != null
+                ? !Objects.equals(this.fileKey, currentFileKey())
+                : !Files.exists(this.file);
+        if (gone) {
+            this.channel.close();
+            this.channel = null;
+            open();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (this.channel == null) {
+            throw new IOException("Stream closed: " + this.file);
+        }
+        checkFile();
+        long now = System.currentTimeMillis();
+        if (this.size == 0 && now >= this.nextRotation) {
+            // nothing to move aside, the empty file starts the new period
+            this.openedAt = LocalDateTime.now();
+            this.nextRotation = LogArchiver.nextRotation(this.interval, now);
+        }
+        if (this.size > 0
+                && now >= this.nextRotationAttempt
+                && ((this.maxSize > 0 && this.size + len > this.maxSize)
+                        || (this.nextRotation != Long.MAX_VALUE && now >= this.nextRotation))) {
+            try {
+                rotate();
+                this.rotationFailed = false;
+            } catch (IOException e) {
+                this.nextRotationAttempt = now + LogArchiver.ROTATION_RETRY_MILLIS;
+                if (!this.rotationFailed) {
+                    this.rotationFailed = true;
+                    this.archiver.reportRotationFailure(e);
+                }
+                if (this.channel == null) {
+                    throw e;
+                }
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        this.size += len;
+    }
+
+    /**
+     * Closes the current segment, moves it aside and starts a new one.
+     */
+    public synchronized void rotate() throws IOException {
+        this.channel.close();
+        this.channel = null;
+        try {
+            this.archiver.rotate(this.openedAt);
+        } finally {
+            // keep logging into the same file if the rename failed, the caller decides when to retry
+            open();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package winstone;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A {@link StartupTimeline.Phase} as a JFR event, recorded when a recording enables
+ * {@code winstone.StartupPhase} (e.g. {@code -XX:StartFlightRecording}).
+ */
+@Name("winstone.StartupPhase")
+@Label("Startup Phase")
+@Category("Winstone")
+@Description("A phase of the Winstone startup")
+@StackTrace(false)
+final class StartupPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Name")
+    String name;
+
+    @Label("Parent")
+    @Description("The phase this one is nested in")
+    String parent;
+
+    /**
+     * Starts the event of a phase, or returns {@code null} if no recording wants it. Typed as
+     * {@link Object} so that callers do not load this class unless JFR is available.
+     */
+    static Object begin(String name, String parent) {
+        StartupPhaseEvent event = new StartupPhaseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.name = name;
+        event.parent = parent;
+        event.begin();
+        return event;
+    }
+
+    static void end(Object event) {
+        StartupPhaseEvent phase = (StartupPhaseEvent) event;
+        phase.end();
+        if (phase.shouldCommit()) {
+            phase.commit();
+        }
+    }
+}
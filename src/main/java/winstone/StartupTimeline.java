@@ -0,0 +1,246 @@
+package winstone;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.LifeCycle;
+
+/**
+ * Records how long each phase of the startup took. The {@link Launcher} registers it as a bean of
+ * the {@link Server}, so that the phases can be looked up with {@code server.getBean(StartupTimeline.class)}
+ * or over JMX after the startup.
+ *
+ * <p>Phases may be nested or overlap; each one is kept with its start and end, relative to the
+ * creation of the timeline, in the order they were started. A phase begun while another one is
+ * open on the same thread is nested in it, which {@link #getReport()} shows as a tree. Each phase
+ * is also recorded as a {@code winstone.StartupPhase} JFR event when a flight recording is running.
+ */
+@ManagedObject("Winstone startup phases")
+public class StartupTimeline {
+
+    /** A named span of the startup; closing it marks its end. */
+    public final class Phase implements AutoCloseable {
+        private final String name;
+        private final Phase parent;
+        private final long start;
+        private volatile long end = -1;
+        private final Object event;
+
+        private Phase(String name, Phase parent) {
+            this.name = name;
+            this.parent = parent;
+            this.event = JFR ? StartupPhaseEvent.begin(name, parent != null ? parent.name : null) : null;
+            this.start = System.nanoTime() - origin;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** The phase that was open on the same thread when this one began, if any. */
+        public Phase getParent() {
+            return parent;
+        }
+
+        /** Nanoseconds from the creation of the timeline to the start of the phase. */
+        public long getStartNanos() {
+            return start;
+        }
+
+        /** Nanoseconds the phase took, or -1 if it has not ended. */
+        public long getDurationNanos() {
+            long end = this.end;
+            return end < 0 ? -1 : end - start;
+        }
+
+        @Override
+        public void close() {
+            if (end >= 0) {
+                return;
+            }
+            end = System.nanoTime() - origin;
+            if (event != null) {
+                StartupPhaseEvent.end(event);
+            }
+            if (current.get() == this) {
+                current.set(parent);
+            }
+        }
+    }
+
+    /** JFR is an optional module, left out of some runtime images. */
+    private static final boolean JFR = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private final long origin = System.nanoTime();
+    private final List<Phase> phases = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Phase> current = new ThreadLocal<>();
+    private volatile boolean finished;
+
+    /**
+     * Returns the timeline registered on the server, or a detached one if there is none (e.g. when
+     * a {@link HostConfiguration} is created without a {@link Launcher}).
+     */
+    static StartupTimeline of(Server server) {
+        StartupTimeline timeline = server.getBean(StartupTimeline.class);
+        return timeline != null ? timeline : new StartupTimeline();
+    }
+
+    /** The {@link System#nanoTime()} at which the timeline was created. */
+    public long getOriginNanos() {
+        return origin;
+    }
+
+    /**
+     * Starts a phase, nested in the phase currently open on this thread. Phases have to be closed
+     * by the thread that began them, in reverse order, for the next ones to be nested correctly.
+     */
+    public Phase begin(String name) {
+        Phase phase = new Phase(name, current.get());
+        current.set(phase);
+        if (!finished) {
+            phases.add(phase);
+        }
+        return phase;
+    }
+
+    /**
+     * Ends the startup: phases begun from now on (e.g. when a webapp is reloaded) are still
+     * emitted as JFR events, but no longer kept, so that the timeline does not grow for the life
+     * of the process.
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Returns a listener that records the start of the component it is added to as a phase.
+     */
+    public LifeCycle.Listener listener(String name) {
+        return new LifeCycle.Listener() {
+            private volatile Phase phase;
+
+            @Override
+            public void lifeCycleStarting(LifeCycle event) {
+                phase = begin(name);
+            }
+
+            @Override
+            public void lifeCycleStarted(LifeCycle event) {
+                end();
+            }
+
+            @Override
+            public void lifeCycleFailure(LifeCycle event, Throwable cause) {
+                end();
+            }
+
+            private void end() {
+                Phase phase = this.phase;
+                if (phase != null) {
+                    phase.close();
+                    this.phase = null;
+                }
+            }
+        };
+    }
+
+    public List<Phase> getPhases() {
+        return List.copyOf(phases);
+    }
+
+    @ManagedAttribute("Duration of each startup phase")
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Phase phase : phases) {
+            long duration = phase.getDurationNanos();
+            if (duration < 0) {
+                continue;
+            }
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(phase.name)
+                    .append('=')
+                    .append(String.format(Locale.ROOT, "%.1fms", duration / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Returns the phases as a JSON tree:
+     * <pre>{"phases":[{"name":"launcher","startMs":1.2,"durationMs":812.5,"phases":[...]}]}</pre>
+     * Times are in milliseconds from the creation of the timeline; phases that have not ended have
+     * a {@code null} duration.
+     */
+    @ManagedAttribute("Startup phases as a JSON tree")
+    public String getReport() {
+        StringBuilder report = new StringBuilder("{\"phases\":");
+        appendPhases(report, null);
+        return report.append('}').toString();
+    }
+
+    /**
+     * Writes the {@link #getReport() report} to the file, replacing it.
+     */
+    public void writeReport(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, getReport() + "\n", StandardCharsets.UTF_8);
+    }
+
+    private void appendPhases(StringBuilder out, Phase parent) {
+        out.append('[');
+        boolean first = true;
+        for (Phase phase : phases) {
+            if (phase.parent != parent) {
+                continue;
+            }
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append("{\"name\":");
+            appendString(out, phase.name);
+            out.append(",\"startMs\":").append(millis(phase.start));
+            long duration = phase.getDurationNanos();
+            out.append(",\"durationMs\":").append(duration < 0 ? "null" : millis(duration));
+            out.append(",\"phases\":");
+            appendPhases(out, phase);
+            out.append('}');
+        }
+        out.append(']');
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
@@ -0,0 +1,167 @@
+package winstone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import winstone.cmdline.Option;
+
+/**
+ * Implements {@code --trainingRun}: starts the configured webapp, sends it the warm-up requests,
+ * shuts it down and lets the JVM write the classes it loaded to an archive at exit. Starting the
+ * JVM with that archive skips most of the loading and linking of the Jetty, webapp and Winstone
+ * classes.
+ *
+ * <p>The archive can only be written by a JVM started for it, so unless the training run was
+ * started with the recording option already, it runs again in a child JVM with the same command
+ * line plus {@code -XX:AOTCacheOutput} (JDK 25 and later) or {@code -XX:ArchiveClassesAtExit}
+ * (dynamic class data sharing).
+ */
+final class TrainingRun {
+
+    /** The JDK AOT cache supersedes dynamic class data sharing from this release. */
+    private static final boolean AOT_CACHE = Runtime.version().feature() >= 25;
+
+    private static final String[] RECORDING_OPTIONS = {
+        "-XX:AOTCacheOutput=", "-XX:ArchiveClassesAtExit=", "-XX:AOTMode=record"
+    };
+
+    private static final String[] ARCHIVE_OPTIONS = {"-XX:AOTCache=", "-XX:SharedArchiveFile="};
+
+    private TrainingRun() {}
+
+    /**
+     * Runs the training, in this JVM or in a child one.
+     *
+     * @return the exit code of the process
+     */
+    static int run(Map<String, String> args, StartupTimeline timeline) throws IOException, InterruptedException {
+        File archive = getArchive(args);
+        if (!hasOption(RECORDING_OPTIONS)) {
+            return fork(archive);
+        }
+        if (!Option.HTTP_PORT.isIn(args)) {
+            // keeps clear of an instance running with the same configuration
+            Option.HTTP_PORT.put(args, "0");
+        }
+        Launcher launcher = new Launcher(args, timeline);
+        try {
+            warmUp(launcher, args);
+        } finally {
+            launcher.shutdown();
+        }
+        Logger.log(Level.INFO, Launcher.RESOURCES, "TrainingRun.Complete", archive, getUseOption(archive));
+        return 0;
+    }
+
+    /**
+     * Points out the archive of an earlier training run if this JVM was not started with it.
+     */
+    static void checkArchive(Map<String, String> args) {
+        File archive = getArchive(args);
+        if (archive.isFile() && !hasOption(ARCHIVE_OPTIONS)) {
+            Logger.log(Level.INFO, Launcher.RESOURCES, "TrainingRun.ArchiveUnused", archive, getUseOption(archive));
+        }
+    }
+
+    private static File getArchive(Map<String, String> args) {
+        return Option.TRAINING_ARCHIVE
+                .get(args, new File(AOT_CACHE ? "winstone.aot" : "winstone.jsa"))
+                .getAbsoluteFile();
+    }
+
+    private static String getRecordOption(File archive) {
+        return (AOT_CACHE ? "-XX:AOTCacheOutput=" : "-XX:ArchiveClassesAtExit=") + archive;
+    }
+
+    private static String getUseOption(File archive) {
+        return (AOT_CACHE ? "-XX:AOTCache=" : "-XX:SharedArchiveFile=") + archive;
+    }
+
+    private static boolean hasOption(String[] prefixes) {
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            for (String prefix : prefixes) {
+                if (argument.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int fork(File archive) throws IOException, InterruptedException {
+        ProcessHandle.Info info = ProcessHandle.current().info();
+        if (info.command().isEmpty() || info.arguments().isEmpty()) {
+            throw new WinstoneException(
+                    Launcher.RESOURCES.getString("TrainingRun.NoCommandLine", getRecordOption(archive)));
+        }
+        List<String> command = new ArrayList<>();
+        command.add(info.command().get());
+        command.add(getRecordOption(archive));
+        command.addAll(List.of(info.arguments().get()));
+        Logger.log(Level.INFO, Launcher.RESOURCES, "TrainingRun.Forking", archive);
+        Logger.log(Level.FINER, Launcher.RESOURCES, "TrainingRun.Command", command);
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+
+    private static void warmUp(Launcher launcher, Map<String, String> args) {
+        int port = -1;
+        for (Connector connector : launcher.server.getConnectors()) {
+            if (connector instanceof ServerConnector
+                    && connector.getConnectionFactory(SslConnectionFactory.class) == null) {
+                port = ((ServerConnector) connector).getLocalPort();
+                break;
+            }
+        }
+        if (port <= 0) {
+            Logger.log(Level.WARNING, Launcher.RESOURCES, "TrainingRun.NoHttpConnector");
+            return;
+        }
+        String prefix = Option.PREFIX.get(args);
+        if (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        String[] paths = Option.TRAINING_REQUESTS.get(args).split(",");
+        int iterations = Option.TRAINING_ITERATIONS.get(args);
+        for (int i = 0; i < iterations; i++) {
+            for (String path : paths) {
+                path = path.trim();
+                if (path.isEmpty()) {
+                    continue;
+                }
+                request("http://localhost:" + port + prefix + (path.startsWith("/") ? "" : "/") + path);
+            }
+        }
+    }
+
+    private static void request(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            try {
+                int status = connection.getResponseCode();
+                // the body goes through the same code as in production
+                InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (body != null) {
+                    try (InputStream in = body) {
+                        in.transferTo(OutputStream.nullOutputStream());
+                    }
+                }
+                Logger.log(Level.FINE, Launcher.RESOURCES, "TrainingRun.Request", url, status);
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            Logger.log(Level.WARNING, Launcher.RESOURCES, "TrainingRun.RequestFailed", url, e);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package winstone;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a WAR into a webroot. All entries are checked to stay inside the webroot and their
+ * directories are created before anything is written; the files are then written by a bounded
+ * number of worker threads, largest first so that a big jar does not end up last, each with its
+ * own buffer.
+ *
+ * <p>After a successful extraction the name, size and CRC-32 of every file are written to
+ * {@value #MANIFEST} in the webroot. When the WAR changes, the manifest of the previous extraction
+ * (see {@link #readManifest()}) tells which files have to be written again and which have to be
+ * removed, so that an upgrade only touches what differs. The previous manifest is only replaced
+ * once the webroot matches the new one, so an interrupted update is simply redone.
+ *
+ * <p>Entries that are STORED (typically the jars in {@code WEB-INF/lib} and images) are copied
+ * with {@link FileChannel#transferTo} straight from their byte range in the archive; only
+ * compressed entries are inflated through a buffer.
+ */
+final class WarExtractor {
+
+    static final String MANIFEST = ".manifest";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Upper bound of the default number of threads, more rarely helps even on slow disks. */
+    private static final int MAX_DEFAULT_THREADS = 8;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+
+    private static final class Target {
+        final ZipEntry entry;
+        final Path path;
+        /** Offset of the local header of a STORED entry, or -1 to inflate through the {@link ZipFile}. */
+        final long localHeader;
+
+        Target(ZipEntry entry, Path path, long localHeader) {
+            this.entry = entry;
+            this.path = path;
+            this.localHeader = localHeader;
+        }
+    }
+
+    private final File warfile;
+    private final File webroot;
+    private final int threads;
+
+    /** Name to {@link #summary} of the files of the previous extraction, if known. */
+    private Map<String, String> previous;
+
+    private int removed;
+
+    /**
+     * @param threads number of threads writing files, or {@code <= 0} for one per processor (up to
+     *     {@value #MAX_DEFAULT_THREADS})
+     */
+    WarExtractor(File warfile, File webroot, int threads) {
+        this.warfile = warfile;
+        this.webroot = webroot;
+        this.threads =
+                threads > 0 ? threads : Math.min(MAX_DEFAULT_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads the manifest left in the webroot by the previous extraction, so that {@link #extract()}
+     * only writes the files that changed.
+     *
+     * @return {@code false} if there is no usable manifest, in which case the webroot should be
+     *     emptied before extracting
+     */
+    boolean readManifest() {
+        Path file = webroot.toPath().resolve(MANIFEST);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        Map<String, String> manifest = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                int crcEnd = line.indexOf(' ');
+                int sizeEnd = line.indexOf(' ', crcEnd + 1);
+                if (crcEnd <= 0 || sizeEnd <= crcEnd + 1) {
+                    throw new IOException("Malformed line: " + line);
+                }
+                manifest.put(line.substring(sizeEnd + 1), line.substring(0, sizeEnd));
+            }
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.WARNING, null, "Ignoring unreadable " + file, e);
+            return false;
+        }
+        previous = manifest;
+        return true;
+    }
+
+    /**
+     * Writes every file of the WAR that the webroot does not already have: with a manifest, the
+     * ones whose size or CRC changed since then (or that are missing), and removes the ones that
+     * are no longer in the WAR; without one, those that are not newer than the WAR.
+     *
+     * @return the number of files written
+     */
+    int extract() throws IOException {
+        Path root = webroot.toPath().normalize();
+        long warModified = warfile.lastModified();
+        try (ZipFile war = new ZipFile(warfile);
+                FileChannel archive = FileChannel.open(warfile.toPath(), StandardOpenOption.READ)) {
+            Map<String, Long> stored = storedEntries(archive);
+            List<Target> targets = new ArrayList<>();
+            Set<Path> dirs = new LinkedHashSet<>();
+            Map<String, String> manifest = new LinkedHashMap<>();
+            for (Enumeration<? extends ZipEntry> e = war.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                File outFile = new File(webroot, entry.getName());
+                Path outPath = outFile.toPath();
+
+                // Disallow unzipping files outside the target dir
+                if (!outPath.normalize().startsWith(root)) {
+                    throw new IOException("Bad zip entry: " + entry.getName());
+                }
+
+                String summary = summary(entry);
+                if (entry.getName().indexOf('\n') == -1 && entry.getName().indexOf('\r') == -1) {
+                    manifest.put(entry.getName(), summary);
+                }
+                if (previous != null) {
+                    // unchanged since the previous extraction
+                    if (summary.equals(previous.get(entry.getName())) && outFile.length() == entry.getSize()) {
+                        continue;
+                    }
+                } else if (outFile.exists() && (outFile.lastModified() > warModified)) {
+                    // If archive date is newer than unzipped file, overwrite
+                    continue;
+                }
+                if (outPath.getParent() != null) {
+                    dirs.add(outPath.getParent());
+                }
+                Long localHeader = entry.getMethod() == ZipEntry.STORED ? stored.get(entry.getName()) : null;
+                targets.add(new Target(entry, outPath, localHeader != null ? localHeader : -1));
+            }
+
+            // first, as a removed file may be where a new directory goes
+            if (previous != null) {
+                for (String name : previous.keySet()) {
+                    if (!manifest.containsKey(name)) {
+                        remove(root, name);
+                    }
+                }
+            }
+
+            for (Path dir : dirs) {
+                try {
+                    Files.createDirectories(dir);
+                } catch (IOException | InvalidPathException | SecurityException ex) {
+                    Logger.logDirectMessage(Level.WARNING, null, "Failed to create dirs " + dir.toAbsolutePath(), null);
+                }
+            }
+
+            targets.sort(Comparator.comparingLong((Target target) -> target.entry.getCompressedSize())
+                    .reversed());
+            write(war, archive, targets);
+            writeManifest(manifest);
+            return targets.size();
+        }
+    }
+
+    /** The number of files {@link #extract()} removed because they are no longer in the WAR. */
+    int getRemovedCount() {
+        return removed;
+    }
+
+    private static String summary(ZipEntry entry) {
+        return Long.toHexString(entry.getCrc()) + ' ' + entry.getSize();
+    }
+
+    /**
+     * Deletes a file of the previous extraction, and the directories that it leaves empty.
+     */
+    private void remove(Path root, String name) {
+        Path path = new File(webroot, name).toPath();
+        if (!path.normalize().startsWith(root)) {
+            return;
+        }
+        try {
+            if (Files.deleteIfExists(path)) {
+                removed++;
+            }
+            for (Path dir = path.getParent(); dir != null && !dir.normalize().equals(root); dir = dir.getParent()) {
+                Files.delete(dir);
+            }
+        } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+            // still in use, or already gone
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.WARNING, null, "Failed to delete " + path.toAbsolutePath(), e);
+        }
+    }
+
+    private void writeManifest(Map<String, String> manifest) throws IOException {
+        Path file = webroot.toPath().resolve(MANIFEST);
+        Path tmp = webroot.toPath().resolve(MANIFEST + ".tmp");
+        Files.createDirectories(webroot.toPath());
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : manifest.entrySet()) {
+                out.write(entry.getValue());
+                out.write(' ');
+                out.write(entry.getKey());
+                out.write('\n');
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        previous = manifest;
+    }
+
+    /**
+     * Hands the targets out to the workers one at a time; the calling thread is one of them. The
+     * first failure of any kind stops all workers, later ones are added to it as suppressed.
+     */
+    private void write(ZipFile war, FileChannel archive, List<Target> targets) throws IOException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int i;
+            while ((i = next.getAndIncrement()) < targets.size() && failure.get() == null) {
+                Target target = targets.get(i);
+                try {
+                    if (target.localHeader >= 0) {
+                        transfer(archive, target);
+                    } else {
+                        copy(war, target, buffer);
+                    }
+                } catch (Throwable e) {
+                    // an Error too, or the thread would die with its target silently left out
+                    IOException error = e instanceof IOException
+                            ? (IOException) e
+                            : new IOException("Failed to extract " + target.entry.getName(), e);
+                    if (!failure.compareAndSet(null, error)) {
+                        failure.get().addSuppressed(error);
+                    }
+                }
+            }
+        };
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 1; i < Math.min(threads, targets.size()); i++) {
+            Thread thread = new Thread(worker, "WAR extraction " + i);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+        worker.run();
+        try {
+            for (Thread thread : workers) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new InterruptedIOException("Interrupted while extracting " + warfile));
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void copy(ZipFile war, Target target, byte[] buffer) throws IOException {
+        try (InputStream in = war.getInputStream(target.entry);
+                OutputStream out = Files.newOutputStream(target.path)) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Copies the bytes of a STORED entry from the archive to the file without going through the
+     * heap, where the platform supports it.
+     */
+    private static void transfer(FileChannel archive, Target target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(archive, header, target.localHeader);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Bad local header of " + target.entry.getName());
+        }
+        long start = target.localHeader
+                + LOCAL_HEADER_SIZE
+                + Short.toUnsignedInt(header.getShort(26))
+                + Short.toUnsignedInt(header.getShort(28));
+        long size = target.entry.getSize();
+        try (FileChannel out = FileChannel.open(
+                target.path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            for (long position = 0; position < size; ) {
+                long transferred = archive.transferTo(start + position, size - position, out);
+                if (transferred <= 0) {
+                    throw new EOFException("Truncated entry " + target.entry.getName());
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Reads the central directory for the local header offsets of the STORED entries, which
+     * {@link ZipEntry} does not expose. Archives that need ZIP64 are left to the {@link ZipFile}
+     * entirely, entries that need it individually are left out.
+     */
+    private static Map<String, Long> storedEntries(FileChannel archive) throws IOException {
+        long length = archive.size();
+        int tailLength = (int) Math.min(length, END_SIZE + 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(archive, tail, length - tailLength);
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            return Map.of();
+        }
+        int entries = Short.toUnsignedInt(tail.getShort(end + 10));
+        long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        if (entries == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            return Map.of();
+        }
+        // bytes in front of the archive (e.g. a launcher script), as ZipFile allows
+        long base = (length - tailLength + end) - directorySize - directoryOffset;
+        if (base < 0) {
+            return Map.of();
+        }
+        ByteBuffer directory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(archive, directory, base + directoryOffset);
+
+        Map<String, Long> stored = new HashMap<>();
+        for (int i = 0; i + CENTRAL_HEADER_SIZE <= directory.limit(); ) {
+            if (directory.getInt(i) != CENTRAL_HEADER_SIGNATURE) {
+                return Map.of();
+            }
+            int method = Short.toUnsignedInt(directory.getShort(i + 10));
+            long size = Integer.toUnsignedLong(directory.getInt(i + 24));
+            int nameLength = Short.toUnsignedInt(directory.getShort(i + 28));
+            int extraLength = Short.toUnsignedInt(directory.getShort(i + 30));
+            int commentLength = Short.toUnsignedInt(directory.getShort(i + 32));
+            long localHeader = Integer.toUnsignedLong(directory.getInt(i + 42));
+            if (method == ZipEntry.STORED && size != 0xFFFFFFFFL && localHeader != 0xFFFFFFFFL) {
+                byte[] name = new byte[nameLength];
+                directory.get(i + CENTRAL_HEADER_SIZE, name);
+                stored.put(new String(name, StandardCharsets.UTF_8), base + localHeader);
+            }
+            i += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return stored;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+}
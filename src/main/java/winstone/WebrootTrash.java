@@ -0,0 +1,121 @@
+package winstone;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+
+/**
+ * Gets stale webroots out of the way without waiting for them to be deleted: the directory is
+ * renamed to a sibling {@code .<name>.trash-<suffix>}, which is then deleted in the background with
+ * its subtrees in parallel. Trash that a previous process did not get to delete (because it
+ * exited first) is picked up by {@link #collectLeftovers}. Symbolic links in the webroot are
+ * deleted, never followed, and a webroot that is a symbolic link itself is not moved at all.
+ */
+final class WebrootTrash {
+
+    private static final String TRASH = ".trash-";
+
+    /** Deletion is bound by the disk, so a few threads are enough. */
+    private static final int PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static ForkJoinPool pool;
+
+    private WebrootTrash() {}
+
+    private static final class DeleteTask extends RecursiveAction {
+        private final Path dir;
+
+        DeleteTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTask> subtrees = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        subtrees.add(new DeleteTask(child));
+                    } else {
+                        delete(child);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // deleted by another process collecting the same leftovers
+                return;
+            } catch (IOException e) {
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to list " + dir, e);
+            }
+            invokeAll(subtrees);
+            delete(dir);
+        }
+
+        private static void delete(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to delete " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the directory aside and deletes it in the background.
+     *
+     * @return {@code false} if it could not be moved, in which case it is still there; always the
+     *     case for a symbolic link, which would be moved instead of the directory it points to
+     */
+    static boolean discard(Path dir) {
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return true;
+        }
+        if (Files.isSymbolicLink(dir)) {
+            return false;
+        }
+        Path trash = dir.resolveSibling("." + dir.getFileName() + TRASH + Long.toHexString(System.nanoTime()));
+        try {
+            Files.move(dir, trash, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.FINE, null, "Failed to move " + dir + " aside, deleting it in place", e);
+            return false;
+        }
+        schedule(trash);
+        return true;
+    }
+
+    /**
+     * Deletes in the background what is left of earlier trash of the directory.
+     */
+    static void collectLeftovers(Path dir) {
+        Path parent = dir.toAbsolutePath().getParent();
+        if (parent == null || !Files.isDirectory(parent)) {
+            return;
+        }
+        String prefix = "." + dir.getFileName() + TRASH;
+        try (DirectoryStream<Path> siblings =
+                Files.newDirectoryStream(parent, path -> path.getFileName().toString().startsWith(prefix))) {
+            for (Path trash : siblings) {
+                schedule(trash);
+            }
+        } catch (IOException e) {
+            Logger.logDirectMessage(Level.WARNING, null, "Failed to look for old webroots in " + parent, e);
+        }
+    }
+
+    private static synchronized void schedule(Path trash) {
+        if (pool == null) {
+            // worker threads are daemons, whatever is left when the JVM exits is collected next time
+            pool = new ForkJoinPool(PARALLELISM);
+        }
+        pool.execute(new DeleteTask(trash));
+    }
+}
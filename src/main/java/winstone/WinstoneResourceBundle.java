@@ -6,8 +6,12 @@
  */
 package winstone;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A ResourceBundle that includes the ability to do string replacement on the
@@ -18,6 +22,77 @@ import java.util.ResourceBundle;
 public class WinstoneResourceBundle {
     private ResourceBundle resources;
 
+    /** Messages that have been looked up with parameters, parsed once for all. */
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * A message split around its {@code [#n]} markers, so that the parameters can be substituted
+     * in a single pass without searching the message again.
+     */
+    static final class MessageTemplate {
+        /** One more literal than there are markers; the markers go between them. */
+        private final String[] literals;
+
+        private final int[] parameters;
+        private final int literalLength;
+
+        private MessageTemplate(String[] literals, int[] parameters) {
+            this.literals = literals;
+            this.parameters = parameters;
+            int length = 0;
+            for (String literal : literals) {
+                length += literal.length();
+            }
+            this.literalLength = length;
+        }
+
+        static MessageTemplate parse(String message) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> parameters = new ArrayList<>();
+            int start = 0;
+            for (int marker = message.indexOf("[#"); marker != -1; marker = message.indexOf("[#", marker + 1)) {
+                int end = marker + 2;
+                while (end < message.length() && end - marker < 11 && Character.isDigit(message.charAt(end))) {
+                    end++;
+                }
+                if (end == marker + 2 || end == message.length() || message.charAt(end) != ']') {
+                    // not a marker, e.g. "[#foo]"
+                    continue;
+                }
+                literals.add(message.substring(start, marker));
+                parameters.add(Integer.parseInt(message.substring(marker + 2, end)));
+                start = end + 1;
+                marker = end;
+            }
+            literals.add(message.substring(start));
+            int[] indexes = new int[parameters.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = parameters.get(i);
+            }
+            return new MessageTemplate(literals.toArray(new String[0]), indexes);
+        }
+
+        String render(Object[] values) {
+            if (parameters.length == 0) {
+                return literals[0];
+            }
+            StringBuilder out = new StringBuilder(literalLength + 16 * parameters.length);
+            out.append(literals[0]);
+            for (int i = 0; i < parameters.length; i++) {
+                int parameter = parameters[i];
+                if (parameter < values.length) {
+                    Object value = values[parameter];
+                    out.append(value != null ? value.toString() : "(null)");
+                } else {
+                    // no value for this marker, left as is
+                    out.append("[#").append(parameter).append(']');
+                }
+                out.append(literals[i + 1]);
+            }
+            return out.toString();
+        }
+    }
+
     /**
      * Constructor
      */
@@ -44,26 +119,27 @@ public class WinstoneResourceBundle {
      * Perform a string replace for a single from/to pair.
      */
     public String getString(String key, Object parameter) {
-        return globalReplace(this.resources.getString(key), "[#0]", toString(parameter));
-    }
-
-    private String toString(Object s) {
-        return s != null ? s.toString() : null;
+        return template(key).render(new Object[] {parameter});
     }
 
     /**
      * Perform a string replace for a set of from/to pairs.
      */
     public String getString(String key, Object[] parameters) {
-        String myCopy = this.resources.getString(key);
-        if (parameters != null) {
-            String[][] tokens = new String[parameters.length][2];
-            for (int n = 0; n < parameters.length; n++) {
-                tokens[n] = new String[] {"[#" + n + "]", toString(parameters[n])};
-            }
-            myCopy = globalReplace(myCopy, tokens);
+        if (parameters == null) {
+            return this.resources.getString(key);
+        }
+        return template(key).render(parameters);
+    }
+
+    private MessageTemplate template(String key) {
+        MessageTemplate template = this.templates.get(key);
+        if (template == null) {
+            // a missing key throws MissingResourceException, as getString(String) does
+            template = MessageTemplate.parse(this.resources.getString(key));
+            this.templates.putIfAbsent(key, template);
         }
-        return myCopy;
+        return template;
     }
 
     /**
@@ -0,0 +1,132 @@
+package winstone.accesslog;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import winstone.cmdline.Option;
+
+/**
+ * Decides which requests make it into the access log, before any formatting is done.
+ *
+ * <p>Responses with an excluded status, or a status that is not included when statuses are
+ * included, are never logged. Other error responses (4xx and 5xx) are always logged, so that a
+ * failing health check or asset is not hidden. Successful responses are logged if their method is
+ * included (if any are) and not excluded, their path matches the include prefixes (if any) and
+ * does not match the exclude prefixes, and they are the n-th one for a sample rate of 1 in n.
+ */
+final class AccessLogFilter {
+    private final boolean[] includedStatus = new boolean[1000];
+    private final boolean[] excludedStatus = new boolean[1000];
+    private boolean includesStatus;
+    private final Set<String> includedMethods = new HashSet<>();
+    private final Set<String> excludedMethods = new HashSet<>();
+    private final PathPrefixTrie includedPaths = new PathPrefixTrie();
+    private final PathPrefixTrie excludedPaths = new PathPrefixTrie();
+    private final int sampleRate;
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private AccessLogFilter(Map<String, String> args) {
+        for (String prefix : split(Option.SIMPLE_ACCESS_LOGGER_INCLUDE_PATHS.get(args))) {
+            includedPaths.add(prefix);
+        }
+        for (String prefix : split(Option.SIMPLE_ACCESS_LOGGER_EXCLUDE_PATHS.get(args))) {
+            excludedPaths.add(prefix);
+        }
+        for (String method : split(Option.SIMPLE_ACCESS_LOGGER_INCLUDE_METHODS.get(args))) {
+            includedMethods.add(method.toUpperCase(Locale.ROOT));
+        }
+        for (String method : split(Option.SIMPLE_ACCESS_LOGGER_EXCLUDE_METHODS.get(args))) {
+            excludedMethods.add(method.toUpperCase(Locale.ROOT));
+        }
+        for (String status : split(Option.SIMPLE_ACCESS_LOGGER_INCLUDE_STATUS.get(args))) {
+            addStatus(includedStatus, status, Option.SIMPLE_ACCESS_LOGGER_INCLUDE_STATUS);
+            includesStatus = true;
+        }
+        for (String status : split(Option.SIMPLE_ACCESS_LOGGER_EXCLUDE_STATUS.get(args))) {
+            addStatus(excludedStatus, status, Option.SIMPLE_ACCESS_LOGGER_EXCLUDE_STATUS);
+        }
+        this.sampleRate = Math.max(1, Option.SIMPLE_ACCESS_LOGGER_SAMPLE_RATE.get(args));
+    }
+
+    /**
+     * Returns the filter configured by the startup arguments, or {@code null} if everything is to
+     * be logged.
+     */
+    static AccessLogFilter create(Map<String, String> args) {
+        AccessLogFilter filter = new AccessLogFilter(args);
+        if (filter.includedPaths.isEmpty()
+                && filter.excludedPaths.isEmpty()
+                && filter.includedMethods.isEmpty()
+                && filter.excludedMethods.isEmpty()
+                && !filter.includesStatus
+                && filter.sampleRate == 1) {
+            for (boolean excluded : filter.excludedStatus) {
+                if (excluded) {
+                    return filter;
+                }
+            }
+            return null;
+        }
+        return filter;
+    }
+
+    /**
+     * Accepts either a status class such as {@code 3xx} or a single status such as {@code 304}.
+     */
+    private static void addStatus(boolean[] table, String status, Option<?> option) {
+        try {
+            if (status.length() == 3 && status.substring(1).equalsIgnoreCase("xx")) {
+                int base = Integer.parseInt(status.substring(0, 1)) * 100;
+                for (int i = base; i < base + 100; i++) {
+                    table[i] = true;
+                }
+            } else {
+                table[Integer.parseInt(status)] = true;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Unexpected status for --" + option.name + ": " + status);
+        }
+    }
+
+    boolean accept(Request request, Response response) {
+        int status = response.getStatus();
+        boolean known = status >= 0 && status < excludedStatus.length;
+        if (known && excludedStatus[status]) {
+            return false;
+        }
+        if (includesStatus && !(known && includedStatus[status])) {
+            return false;
+        }
+        if (status >= 400) {
+            return true;
+        }
+        if (!includedMethods.isEmpty() && !includedMethods.contains(request.getMethod())) {
+            return false;
+        }
+        if (!excludedMethods.isEmpty() && excludedMethods.contains(request.getMethod())) {
+            return false;
+        }
+        String path = request.getHttpURI().getPath();
+        if (path == null) {
+            path = "";
+        }
+        if (!includedPaths.isEmpty() && !includedPaths.matches(path)) {
+            return false;
+        }
+        if (!excludedPaths.isEmpty() && excludedPaths.matches(path)) {
+            return false;
+        }
+        return sampleRate == 1 || sampleCounter.getAndIncrement() % sampleRate == 0;
+    }
+
+    private static String[] split(String list) {
+        if (list == null || list.isBlank()) {
+            return new String[0];
+        }
+        return list.trim().split("\\s*,\\s*");
+    }
+}
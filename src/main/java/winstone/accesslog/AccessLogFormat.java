@@ -0,0 +1,23 @@
+package winstone.accesslog;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Encodes one access log record.
+ */
+interface AccessLogFormat {
+
+    /**
+     * Appends the complete record for the request, including whatever separates it from the next one.
+     */
+    void format(LogBuffer out, Request request, Response response);
+
+    /**
+     * Whether the format reports how long requests were queued, which needs a
+     * {@link DispatchTimeHandler} in front of the webapp.
+     */
+    default boolean needsDispatchTime() {
+        return false;
+    }
+}
@@ -0,0 +1,162 @@
+package winstone.accesslog;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One request read back from an access log written with {@code --simpleAccessLogger.format=binary}.
+ */
+public final class AccessLogRecord {
+    private final long time;
+    private final int status;
+    private final long size;
+    private final String ip;
+    private final String user;
+    private final String method;
+    private final String path;
+    private final String protocol;
+    private final String referer;
+    private final String userAgent;
+    private final String forwardedFor;
+    private final long latency;
+    private final long bytesIn;
+
+    private AccessLogRecord(ByteBuffer record) throws IOException {
+        int version = record.get();
+        if (version < 1 || version > BinaryAccessLogFormat.VERSION) {
+            throw new IOException("Unsupported access log record version " + version);
+        }
+        this.time = record.getLong();
+        this.status = record.getInt();
+        this.size = record.getLong();
+        this.ip = string(record);
+        this.user = string(record);
+        this.method = string(record);
+        this.path = string(record);
+        this.protocol = string(record);
+        this.referer = string(record);
+        this.userAgent = string(record);
+        this.forwardedFor = string(record);
+        // version 1 records end here
+        this.latency = version >= 2 ? record.getLong() : -1;
+        this.bytesIn = version >= 2 ? record.getLong() : -1;
+    }
+
+    /**
+     * Reads the next record, or returns {@code null} at the end of the stream.
+     */
+    public static AccessLogRecord read(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 1) {
+            throw new IOException("Corrupt access log record length " + length);
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        try {
+            return new AccessLogRecord(ByteBuffer.wrap(record));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt access log record", e);
+        }
+    }
+
+    private static String string(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    /**
+     * Writes the record as one line of JSON, in the same form as {@code --simpleAccessLogger.format=json}.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        LogBuffer buffer = LogBuffer.get();
+        JsonAccessLogFormat.write(
+                buffer,
+                time,
+                ip,
+                user,
+                method,
+                path,
+                protocol,
+                status,
+                size,
+                referer,
+                userAgent,
+                forwardedFor,
+                latency,
+                bytesIn);
+        out.write(buffer.array(), 0, buffer.size());
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getReferer() {
+        return referer;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getForwardedFor() {
+        return forwardedFor;
+    }
+
+    /**
+     * Microseconds from the first byte of the request until it was logged, or -1 if the record was
+     * written before they were logged.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Bytes of request content read, or -1 if the record was written before they were logged.
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+}
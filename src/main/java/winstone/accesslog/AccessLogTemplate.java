@@ -0,0 +1,200 @@
+package winstone.accesslog;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.net.ssl.SSLSession;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * An access log pattern such as {@code ###ip### - ###user### ###time###}, compiled once into a
+ * sequence of literal and field segments. Formatting a request walks the segments and encodes
+ * each one straight into a {@link LogBuffer}, instead of running a search-and-replace over the
+ * whole pattern for every token.
+ *
+ * <p>Text between tokens, as well as anything that looks like a token but is not one of the
+ * known {@code ###name###} fields, is copied to the output unchanged.
+ *
+ * <p>{@code ###latency###} is the time from the first byte of the request until it is logged and
+ * {@code ###queued###} the time from the end of its headers until a thread started handling it,
+ * both in microseconds. {@code ###bytesIn###} counts the request content read,
+ * {@code ###streamId###} is the HTTP/2 or HTTP/3 stream, and {@code ###tlsProtocol###} and
+ * {@code ###tlsCipher###} describe the TLS session; each is {@code -} where it does not apply.
+ */
+final class AccessLogTemplate implements AccessLogFormat {
+
+    /**
+     * A piece of a compiled pattern.
+     */
+    interface Segment {
+        void appendTo(LogBuffer out, Request request, Response response);
+    }
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final TimestampCache TIME = new TimestampCache("dd/MMM/yyyy:HH:mm:ss Z");
+
+    private static final Map<String, Segment> FIELDS = new LinkedHashMap<>();
+
+    private static final Segment QUEUED = (out, request, response) -> {
+        Object dispatched = request.getAttribute(DispatchTimeHandler.DISPATCH_NANO_TIME);
+        if (dispatched instanceof Long) {
+            out.append(((Long) dispatched - request.getHeadersNanoTime()) / 1000);
+        } else {
+            out.append('-');
+        }
+    };
+
+    static {
+        FIELDS.put("###x-forwarded-for###", header("X-Forwarded-For"));
+        FIELDS.put("###x-forwarded-host###", header("X-Forwarded-Host"));
+        FIELDS.put("###x-forwarded-proto###", header("X-Forwarded-Proto"));
+        FIELDS.put("###x-forwarded-protocol###", header("X-Forwarded-Protocol"));
+        FIELDS.put("###x-forwarded-server###", header("X-Forwarded-Server"));
+        FIELDS.put("###x-forwarded-ssl###", header("X-Forwarded-Ssl"));
+        FIELDS.put("###x-requested-with###", header("X-Requested-With"));
+        FIELDS.put("###x-do-not-track###", header("X-Do-Not-Track"));
+        FIELDS.put("###dnt###", header("DNT"));
+        FIELDS.put("###via###", header("Via"));
+        FIELDS.put("###ip###", (out, request, response) -> appendNvl(out, Request.getRemoteAddr(request)));
+        FIELDS.put("###user###", (out, request, response) -> appendNvl(out, remoteUser(request)));
+        FIELDS.put("###time###", (out, request, response) -> out.append('[')
+                .append(TIME.now())
+                .append(']'));
+        FIELDS.put("###uriLine###", (out, request, response) -> {
+            appendNvl(out, request.getMethod()).append(' ');
+            appendNvl(out, request.getHttpURI().getPath()).append(' ');
+            appendNvl(out, request.getConnectionMetaData().getProtocol());
+        });
+        FIELDS.put("###status###", (out, request, response) -> out.append(response.getStatus()));
+        FIELDS.put("###size###", (out, request, response) -> out.append(Response.getContentBytesWritten(response)));
+        FIELDS.put("###referer###", header("Referer"));
+        FIELDS.put("###userAgent###", header("User-Agent"));
+        FIELDS.put("###latency###", (out, request, response) -> out.append(latencyMicros(request)));
+        FIELDS.put("###queued###", QUEUED);
+        FIELDS.put("###bytesIn###", (out, request, response) -> out.append(Request.getContentBytesRead(request)));
+        FIELDS.put("###streamId###", (out, request, response) -> appendNvl(out, streamId(request)));
+        FIELDS.put("###tlsProtocol###", (out, request, response) -> {
+            SSLSession session = sslSession(request);
+            appendNvl(out, session == null ? null : session.getProtocol());
+        });
+        FIELDS.put("###tlsCipher###", (out, request, response) -> {
+            SSLSession session = sslSession(request);
+            appendNvl(out, session == null ? null : session.getCipherSuite());
+        });
+    }
+
+    private final Segment[] segments;
+
+    private AccessLogTemplate(Segment[] segments) {
+        this.segments = segments;
+    }
+
+    @Override
+    public boolean needsDispatchTime() {
+        for (Segment segment : segments) {
+            if (segment == QUEUED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits the pattern into literal text and the known {@code ###name###} fields.
+     */
+    static AccessLogTemplate compile(String pattern) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            Map.Entry<String, Segment> field = pattern.charAt(i) == '#' ? fieldAt(pattern, i) : null;
+            if (field == null) {
+                literal.append(pattern.charAt(i++));
+                continue;
+            }
+            if (literal.length() > 0) {
+                segments.add(literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(field.getValue());
+            i += field.getKey().length();
+        }
+        if (literal.length() > 0) {
+            segments.add(literal(literal.toString()));
+        }
+        return new AccessLogTemplate(segments.toArray(new Segment[0]));
+    }
+
+    private static Map.Entry<String, Segment> fieldAt(String pattern, int index) {
+        for (Map.Entry<String, Segment> field : FIELDS.entrySet()) {
+            if (pattern.startsWith(field.getKey(), index)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void format(LogBuffer out, Request request, Response response) {
+        for (Segment segment : segments) {
+            segment.appendTo(out, request, response);
+        }
+        out.append(LINE_SEPARATOR);
+    }
+
+    private static Segment literal(String text) {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        return (out, request, response) -> out.append(encoded);
+    }
+
+    private static Segment header(String name) {
+        return (out, request, response) -> appendNvl(out, request.getHeaders().get(name));
+    }
+
+    private static LogBuffer appendNvl(LogBuffer out, String value) {
+        return out.append(value == null ? "-" : value);
+    }
+
+    /**
+     * Time from the first byte of the request until now, in microseconds.
+     */
+    static long latencyMicros(Request request) {
+        return (System.nanoTime() - request.getBeginNanoTime()) / 1000;
+    }
+
+    private static String streamId(Request request) {
+        HttpVersion version = request.getConnectionMetaData().getHttpVersion();
+        // for HTTP/1 the id is just a per connection counter
+        return version == HttpVersion.HTTP_2 || version == HttpVersion.HTTP_3 ? request.getId() : null;
+    }
+
+    private static SSLSession sslSession(Request request) {
+        if (!request.getConnectionMetaData().isSecure()) {
+            return null;
+        }
+        EndPoint endPoint = request.getConnectionMetaData().getConnection().getEndPoint();
+        if (endPoint instanceof SslConnection.SslEndPoint) {
+            return ((SslConnection.SslEndPoint) endPoint)
+                    .getSslConnection()
+                    .getSSLEngine()
+                    .getSession();
+        }
+        return null;
+    }
+
+    static String remoteUser(Request request) {
+        // mimic
+        // https://github.com/jetty/jetty.project/blob/c5b2533fdecce21b54c6fbaf36f79bc3ba909775/jetty-core/jetty-server/src/main/java/org/eclipse/jetty/server/CustomRequestLog.java#L1093-L1099
+        Request.AuthenticationState authenticationState = Request.getAuthenticationState(request);
+        Principal principal = authenticationState == null ? null : authenticationState.getUserPrincipal();
+        return principal == null ? null : principal.getName();
+    }
+}
@@ -0,0 +1,272 @@
+package winstone.accesslog;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import winstone.Logger;
+import winstone.cmdline.OverflowPolicy;
+
+/**
+ * Moves access log writes off the request threads. Request threads copy their encoded line into a
+ * bounded, lock-free ring buffer; a single writer thread drains it and hands many lines at once to
+ * the {@link Output}, so that the number of {@code write()} calls no longer follows the request
+ * rate ("group commit").
+ *
+ * <p>A batch is written when the next line would not fit into it, or when its oldest line has been
+ * waiting for longer than the flush interval. What happens when the ring buffer is full is decided
+ * by the {@link OverflowPolicy}.
+ */
+final class AsyncLogWriter implements Runnable {
+
+    /**
+     * Receives the batches. Called from the writer thread, and from request threads with
+     * {@link OverflowPolicy#SPILL}, so implementations must be thread safe.
+     */
+    interface Output {
+        void write(byte[] bytes, int offset, int length);
+    }
+
+    /** Slots that had to grow beyond this size for an unusually long line are not kept. */
+    private static final int MAX_RETAINED_SLOT_SIZE = 4096;
+
+    /** How long a blocked request thread waits before retrying, in nanoseconds. */
+    private static final long BLOCK_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /** Minimum time between two warnings about dropped lines. */
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final class Slot {
+        volatile long sequence;
+        byte[] data;
+        int length;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private final String name;
+    private final Slot[] slots;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final Output output;
+
+    /** Next sequence to be claimed by a producer. */
+    private final AtomicLong tail = new AtomicLong();
+    /** Next sequence to be consumed; only touched by the writer thread, then by {@link #drainAfterClose}. */
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean parked;
+    private volatile boolean closed;
+    private volatile boolean outputFailed;
+
+    AsyncLogWriter(
+            String name,
+            int capacity,
+            OverflowPolicy overflowPolicy,
+            int flushSize,
+            long flushInterval,
+            Output output) {
+        // the next power of two, at least 2 and at most 2^30
+        int size = Math.max(2, Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 30) - 1)) << 1);
+        this.name = name;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Slot(i);
+        }
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.flushSize = Math.max(flushSize, 1);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushInterval, 0));
+        this.output = output;
+        this.thread = new Thread(this, "Access log writer (" + name + ")");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Number of lines discarded so far because the buffer was full.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Queues a copy of the given bytes. Never blocks unless the policy is {@link OverflowPolicy#BLOCK}.
+     */
+    void publish(byte[] bytes, int length) {
+        if (closed) {
+            output.write(bytes, 0, length);
+            return;
+        }
+        while (!tryPublish(bytes, length)) {
+            if (closed || (overflowPolicy == OverflowPolicy.BLOCK && !thread.isAlive())) {
+                // nobody is going to make room
+                output.write(bytes, 0, length);
+                return;
+            }
+            switch (overflowPolicy) {
+                case DROP:
+                    dropped.increment();
+                    return;
+                case SPILL:
+                    output.write(bytes, 0, length);
+                    return;
+                case BLOCK:
+                default:
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(this, BLOCK_RETRY_NANOS);
+            }
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        if (closed && !thread.isAlive()) {
+            // raced with close(): the writer thread may have stopped before the line was queued
+            drainAfterClose();
+        }
+    }
+
+    private boolean tryPublish(byte[] bytes, int length) {
+        while (true) {
+            long pos = tail.get();
+            Slot slot = slots[(int) pos & mask];
+            long diff = slot.sequence - pos;
+            if (diff < 0) {
+                // the writer has not consumed this slot yet
+                return false;
+            }
+            if (diff == 0 && tail.compareAndSet(pos, pos + 1)) {
+                if (slot.data == null || slot.data.length < length) {
+                    slot.data = new byte[Math.max(length, 256)];
+                }
+                System.arraycopy(bytes, 0, slot.data, 0, length);
+                slot.length = length;
+                slot.sequence = pos + 1;
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        byte[] batch = new byte[flushSize];
+        int batchLength = 0;
+        long batchStart = 0;
+        long reportedDrops = 0;
+        long lastDropReport = System.nanoTime() - DROP_REPORT_INTERVAL_NANOS;
+        while (true) {
+            boolean drained = false;
+            Slot slot;
+            while ((slot = slots[(int) head & mask]).sequence == head + 1) {
+                drained = true;
+                if (batchLength + slot.length > batch.length && batchLength > 0) {
+                    write(batch, 0, batchLength);
+                    batchLength = 0;
+                }
+                if (slot.length > batch.length) {
+                    write(slot.data, 0, slot.length);
+                } else {
+                    if (batchLength == 0) {
+                        batchStart = System.nanoTime();
+                    }
+                    System.arraycopy(slot.data, 0, batch, batchLength, slot.length);
+                    batchLength += slot.length;
+                }
+                if (slot.data.length > MAX_RETAINED_SLOT_SIZE) {
+                    slot.data = null;
+                }
+                slot.sequence = head + slots.length;
+                head++;
+            }
+
+            boolean stopping = closed;
+            long now = System.nanoTime();
+            if (batchLength > 0 && (stopping || now - batchStart >= flushIntervalNanos)) {
+                write(batch, 0, batchLength);
+                batchLength = 0;
+            }
+
+            long drops = dropped.sum();
+            if (drops > reportedDrops && (stopping || now - lastDropReport >= DROP_REPORT_INTERVAL_NANOS)) {
+                Logger.log(
+                        Level.WARNING,
+                        SimpleAccessLogger.ACCESSLOG_RESOURCES,
+                        "SimpleAccessLogger.Dropped",
+                        drops - reportedDrops,
+                        name);
+                reportedDrops = drops;
+                lastDropReport = now;
+            }
+
+            if (stopping) {
+                if (slots[(int) head & mask].sequence != head + 1) {
+                    return;
+                }
+            } else if (!drained) {
+                parked = true;
+                // publishers check the flag after queuing, so either the line is seen here or they unpark us
+                if (slots[(int) head & mask].sequence != head + 1 && !closed) {
+                    if (batchLength > 0) {
+                        LockSupport.parkNanos(this, flushIntervalNanos - (now - batchStart));
+                    } else {
+                        LockSupport.park(this);
+                    }
+                }
+                parked = false;
+            }
+        }
+    }
+
+    /**
+     * Writes out everything that was queued and stops the writer thread. Lines published after this
+     * call are written synchronously.
+     */
+    void close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(thread);
+        thread.join(timeoutMillis);
+        if (!thread.isAlive()) {
+            drainAfterClose();
+        }
+    }
+
+    /**
+     * Writes the lines queued by publishers that checked {@link #closed} just before it was set.
+     * Only called once the writer thread has ended, so the ring has no other consumer.
+     */
+    private synchronized void drainAfterClose() {
+        Slot slot;
+        while ((slot = slots[(int) head & mask]).sequence == head + 1) {
+            write(slot.data, 0, slot.length);
+            slot.sequence = head + slots.length;
+            head++;
+        }
+    }
+
+    /**
+     * Hands bytes to the {@link Output} on behalf of the writer thread, which must survive whatever
+     * the output throws: publishers would wait for it forever with {@link OverflowPolicy#BLOCK}.
+     */
+    private void write(byte[] bytes, int offset, int length) {
+        try {
+            output.write(bytes, offset, length);
+            outputFailed = false;
+        } catch (RuntimeException e) {
+            // report once for a run of failures rather than for every line
+            if (!outputFailed) {
+                outputFailed = true;
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to write access log " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package winstone.accesslog;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Compact length-prefixed records, all integers big-endian:
+ *
+ * <pre>
+ * int32  length of the rest of the record
+ * int8   version, currently {@value #VERSION}
+ * int64  time, milliseconds since the epoch
+ * int32  status
+ * int64  response size
+ * string ip, user, method, path, protocol, referer, userAgent, forwardedFor
+ * int64  latency in microseconds (since version 2)
+ * int64  request bytes read (since version 2)
+ * </pre>
+ *
+ * where a string is its UTF-8 byte length as int32 (-1 for none) followed by the bytes. Readers
+ * skip whatever follows the fields they know, so that older readers can read newer records;
+ * fields added at the end come with a new version, so that newer readers know whether to expect
+ * them. Use {@link AccessLogRecord} or {@code winstone.tools.AccessLogDecoder} to read them.
+ */
+final class BinaryAccessLogFormat implements AccessLogFormat {
+
+    static final int VERSION = 2;
+
+    @Override
+    public void format(LogBuffer out, Request request, Response response) {
+        int start = out.size();
+        out.putInt(0)
+                .putByte(VERSION)
+                .putLong(System.currentTimeMillis())
+                .putInt(response.getStatus())
+                .putLong(Response.getContentBytesWritten(response))
+                .putString(Request.getRemoteAddr(request))
+                .putString(AccessLogTemplate.remoteUser(request))
+                .putString(request.getMethod())
+                .putString(request.getHttpURI().getPath())
+                .putString(request.getConnectionMetaData().getProtocol())
+                .putString(request.getHeaders().get("Referer"))
+                .putString(request.getHeaders().get("User-Agent"))
+                .putString(request.getHeaders().get("X-Forwarded-For"))
+                .putLong(AccessLogTemplate.latencyMicros(request))
+                .putLong(Request.getContentBytesRead(request));
+        out.putInt(start, out.size() - start - 4);
+    }
+}
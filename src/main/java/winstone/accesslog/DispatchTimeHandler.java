@@ -0,0 +1,25 @@
+package winstone.accesslog;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Notes when a request reaches the handlers, so that the access log can tell how long it waited
+ * for a thread after its headers were parsed ({@code ###queued###}). Only installed when the
+ * access log format asks for it.
+ */
+public class DispatchTimeHandler extends Handler.Wrapper {
+    static final String DISPATCH_NANO_TIME = DispatchTimeHandler.class.getName() + ".nanoTime";
+
+    public DispatchTimeHandler(Handler handler) {
+        super(handler);
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception {
+        request.setAttribute(DISPATCH_NANO_TIME, System.nanoTime());
+        return super.handle(request, response, callback);
+    }
+}
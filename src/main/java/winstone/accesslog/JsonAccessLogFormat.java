@@ -0,0 +1,121 @@
+package winstone.accesslog;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Newline-delimited JSON, one object per request:
+ *
+ * <pre>{@code
+ * {"time":"2024-03-05T13:42:07.123+01:00","ip":"10.0.0.1","user":null,"method":"GET","path":"/",
+ *  "protocol":"HTTP/1.1","status":200,"size":1234,"referer":null,"userAgent":"curl/8.5.0","forwardedFor":null,
+ *  "latency":1830,"bytesIn":0}
+ * }</pre>
+ *
+ * Values are escaped and encoded straight into the {@link LogBuffer}; missing values are
+ * {@code null}. {@code latency} is in microseconds.
+ */
+final class JsonAccessLogFormat implements AccessLogFormat {
+
+    private static final TimestampCache SECONDS = new TimestampCache("yyyy-MM-dd'T'HH:mm:ss");
+    private static final TimestampCache OFFSET = new TimestampCache("XXX");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public void format(LogBuffer out, Request request, Response response) {
+        write(
+                out,
+                System.currentTimeMillis(),
+                Request.getRemoteAddr(request),
+                AccessLogTemplate.remoteUser(request),
+                request.getMethod(),
+                request.getHttpURI().getPath(),
+                request.getConnectionMetaData().getProtocol(),
+                response.getStatus(),
+                Response.getContentBytesWritten(response),
+                request.getHeaders().get("Referer"),
+                request.getHeaders().get("User-Agent"),
+                request.getHeaders().get("X-Forwarded-For"),
+                AccessLogTemplate.latencyMicros(request),
+                Request.getContentBytesRead(request));
+    }
+
+    /**
+     * Writes one line; shared with {@link AccessLogRecord} so that decoded binary logs look exactly
+     * like the ones written as JSON.
+     */
+    static void write(
+            LogBuffer out,
+            long time,
+            String ip,
+            String user,
+            String method,
+            String path,
+            String protocol,
+            int status,
+            long size,
+            String referer,
+            String userAgent,
+            String forwardedFor,
+            long latency,
+            long bytesIn) {
+        out.append("{\"time\":\"").append(SECONDS.format(time)).append('.');
+        int millis = (int) Math.floorMod(time, 1000L);
+        out.append((char) ('0' + millis / 100))
+                .append((char) ('0' + millis / 10 % 10))
+                .append((char) ('0' + millis % 10));
+        out.append(OFFSET.format(time)).append('"');
+        string(out.append(",\"ip\":"), ip);
+        string(out.append(",\"user\":"), user);
+        string(out.append(",\"method\":"), method);
+        string(out.append(",\"path\":"), path);
+        string(out.append(",\"protocol\":"), protocol);
+        out.append(",\"status\":").append(status);
+        out.append(",\"size\":").append(size);
+        string(out.append(",\"referer\":"), referer);
+        string(out.append(",\"userAgent\":"), userAgent);
+        string(out.append(",\"forwardedFor\":"), forwardedFor);
+        out.append(",\"latency\":").append(latency);
+        out.append(",\"bytesIn\":").append(bytesIn);
+        out.append("}\n");
+    }
+
+    static void string(LogBuffer out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+}
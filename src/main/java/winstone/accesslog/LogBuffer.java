@@ -0,0 +1,176 @@
+package winstone.accesslog;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that access log lines are encoded into. Characters are written as UTF-8
+ * directly, so no intermediate {@link String} or encoder is needed. One instance is kept per thread
+ * (see {@link #get()}), which means formatting a log line does not allocate in the steady state.
+ */
+final class LogBuffer {
+    private static final int INITIAL_CAPACITY = 512;
+
+    /**
+     * Buffers that had to grow beyond this size (e.g. because of a huge header) are not kept
+     * around for the next request on the same thread.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<LogBuffer> BUFFERS = ThreadLocal.withInitial(LogBuffer::new);
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the empty buffer of the current thread.
+     */
+    static LogBuffer get() {
+        LogBuffer buffer = BUFFERS.get();
+        if (buffer.bytes.length > MAX_RETAINED_CAPACITY) {
+            buffer.bytes = new byte[INITIAL_CAPACITY];
+        }
+        buffer.size = 0;
+        return buffer;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int size() {
+        return size;
+    }
+
+    LogBuffer append(char c) {
+        if (c < 0x80) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            // a lone surrogate cannot be encoded, same replacement as the JDK encoder
+            ensureCapacity(1);
+            bytes[size++] = '?';
+        } else {
+            ensureCapacity(3);
+            bytes[size++] = (byte) (0xE0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return this;
+    }
+
+    LogBuffer append(CharSequence s) {
+        return append(s, 0, s.length());
+    }
+
+    LogBuffer append(CharSequence s, int start, int end) {
+        ensureCapacity(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                ensureCapacity(1);
+                bytes[size++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                ensureCapacity(4);
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                append(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends bytes that are already UTF-8 encoded.
+     */
+    LogBuffer append(byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, size, encoded.length);
+        size += encoded.length;
+        return this;
+    }
+
+    LogBuffer append(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return append("-9223372036854775808");
+            }
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        int pos = size + digits;
+        do {
+            bytes[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        size += digits;
+        return this;
+    }
+
+    LogBuffer putByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Appends a big-endian 32 bit integer.
+     */
+    LogBuffer putInt(int value) {
+        ensureCapacity(4);
+        putInt(size, value);
+        size += 4;
+        return this;
+    }
+
+    /**
+     * Overwrites four bytes that were appended earlier, e.g. to fill in a length prefix.
+     */
+    void putInt(int position, int value) {
+        bytes[position] = (byte) (value >>> 24);
+        bytes[position + 1] = (byte) (value >>> 16);
+        bytes[position + 2] = (byte) (value >>> 8);
+        bytes[position + 3] = (byte) value;
+    }
+
+    /**
+     * Appends a big-endian 64 bit integer.
+     */
+    LogBuffer putLong(long value) {
+        putInt((int) (value >>> 32));
+        return putInt((int) value);
+    }
+
+    /**
+     * Appends the UTF-8 byte length followed by the UTF-8 bytes, or a length of -1 for
+     * {@code null}.
+     */
+    LogBuffer putString(CharSequence s) {
+        if (s == null) {
+            return putInt(-1);
+        }
+        int start = size;
+        putInt(0);
+        append(s);
+        putInt(start, size - start - 4);
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
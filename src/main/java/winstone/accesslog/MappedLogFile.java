@@ -0,0 +1,230 @@
+package winstone.accesslog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import winstone.LogArchiver;
+import winstone.cmdline.RotationInterval;
+
+/**
+ * Appends to a log file through memory mappings instead of {@code write()} calls. The file is
+ * mapped in chunks that are allocated as the log grows; a writer claims its range with an atomic
+ * add on the end offset and copies its bytes straight into the mapping, so writers neither wait
+ * for each other nor for the disk.
+ *
+ * <p>While the file is open it ends in zeros up to the end of the current chunk; it is truncated
+ * to what was written when it is rotated or closed. A hidden {@code .<name>.mapped} file next to
+ * it exists while it is open, and holds the length of the data if the truncation failed, so that
+ * a reopened file is only searched for its padding when it was not closed cleanly. Zero bytes at
+ * the end of the last record (e.g. a binary record of a request without a body) are then lost
+ * with the padding, along with whatever else the crash cut off.
+ *
+ * <p>If the file cannot be moved aside when it is rotated, writing continues into it and rotating
+ * is retried after {@link LogArchiver#ROTATION_RETRY_MILLIS}.
+ */
+final class MappedLogFile {
+
+    private final Path file;
+    private final Path marker;
+    private final long chunkSize;
+    private final long maxSize;
+    private final RotationInterval interval;
+    private final LogArchiver archiver;
+
+    /** Writers hold the read lock; rotating and closing take the write lock. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong end = new AtomicLong();
+    private final ConcurrentHashMap<Long, MappedByteBuffer> chunks = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private LocalDateTime openedAt;
+    private volatile long nextRotation;
+    private volatile long nextRotationAttempt;
+    private boolean rotationFailed;
+
+    MappedLogFile(
+            Path file, long chunkSize, long maxSize, RotationInterval interval, int maxHistory, boolean compress)
+            throws IOException {
+        this.file = file.toAbsolutePath();
+        this.marker = this.file.resolveSibling("." + this.file.getFileName() + ".mapped");
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+        this.interval = interval;
+        this.archiver = new LogArchiver(this.file, maxHistory, compress);
+        open();
+    }
+
+    private void open() throws IOException {
+        this.channel = FileChannel.open(
+                this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.end.set(dataEnd());
+        Files.write(this.marker, new byte[0]);
+        this.chunks.clear();
+        this.openedAt = LocalDateTime.now();
+        this.nextRotation = LogArchiver.nextRotation(this.interval, System.currentTimeMillis());
+    }
+
+    /**
+     * Finds the end of the data in a file that may still have the zero padding of a mapped chunk.
+     */
+    private long dataEnd() throws IOException {
+        long size = this.channel.size();
+        if (!Files.exists(this.marker)) {
+            // closed cleanly, or never mapped
+            return size;
+        }
+        String length = Files.readString(this.marker, StandardCharsets.US_ASCII).trim();
+        if (!length.isEmpty()) {
+            try {
+                return Math.min(Long.parseLong(length), size);
+            } catch (NumberFormatException e) {
+                // not written by us, search for the padding
+            }
+        }
+        return paddingStart(this.channel);
+    }
+
+    private static long paddingStart(FileChannel channel) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+        long position = channel.size();
+        while (position > 0) {
+            int length = (int) Math.min(block.capacity(), position);
+            block.clear().limit(length);
+            channel.read(block, position - length);
+            for (int i = length - 1; i >= 0; i--) {
+                if (block.get(i) != 0) {
+                    return position - length + i + 1;
+                }
+            }
+            position -= length;
+        }
+        return 0;
+    }
+
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        if (needsRotation(length)) {
+            rotate(length);
+        }
+        lock.readLock().lock();
+        try {
+            if (this.channel == null) {
+                throw new IOException("Closed: " + this.file);
+            }
+            long position = this.end.getAndAdd(length);
+            while (length > 0) {
+                long chunk = position / this.chunkSize;
+                int chunkOffset = (int) (position - chunk * this.chunkSize);
+                int n = (int) Math.min(length, this.chunkSize - chunkOffset);
+                try {
+                    chunk(chunk).put(chunkOffset, bytes, offset, n);
+                } catch (InternalError e) {
+                    // the page could not be backed, e.g. the disk is full
+                    throw new IOException("Failed to write to " + this.file, e);
+                }
+                position += n;
+                offset += n;
+                length -= n;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean needsRotation(int length) {
+        long size = this.end.get();
+        long now = System.currentTimeMillis();
+        return now >= this.nextRotationAttempt
+                && ((this.maxSize > 0 && size > 0 && size + length > this.maxSize) || now >= this.nextRotation);
+    }
+
+    private MappedByteBuffer chunk(long index) throws IOException {
+        MappedByteBuffer chunk = this.chunks.get(index);
+        if (chunk == null) {
+            synchronized (this.chunks) {
+                chunk = this.chunks.get(index);
+                if (chunk == null) {
+                    // mapping beyond the end grows the file
+                    chunk = this.channel.map(FileChannel.MapMode.READ_WRITE, index * this.chunkSize, this.chunkSize);
+                    this.chunks.put(index, chunk);
+                    // older chunks are remapped in the unlikely case that a slow writer still needs them
+                    this.chunks.keySet().removeIf(i -> i < index - 1);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private void rotate(int length) throws IOException {
+        lock.writeLock().lock();
+        try {
+            // another writer may have rotated while we waited
+            if (this.channel == null || !needsRotation(length)) {
+                return;
+            }
+            if (this.end.get() == 0) {
+                // nothing to move aside, the empty file starts the new period
+                this.openedAt = LocalDateTime.now();
+                this.nextRotation = LogArchiver.nextRotation(this.interval, System.currentTimeMillis());
+                return;
+            }
+            closeChannel();
+            try {
+                this.archiver.rotate(this.openedAt);
+                // the length of a file that could not be truncated went with it
+                Files.deleteIfExists(this.marker);
+                this.rotationFailed = false;
+            } catch (IOException e) {
+                // keep writing into the same file, and retry later
+                this.nextRotationAttempt = System.currentTimeMillis() + LogArchiver.ROTATION_RETRY_MILLIS;
+                if (!this.rotationFailed) {
+                    this.rotationFailed = true;
+                    this.archiver.reportRotationFailure(e);
+                }
+            } finally {
+                open();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        this.chunks.clear();
+        long length = this.end.get();
+        boolean truncated;
+        try {
+            this.channel.truncate(length);
+            truncated = true;
+        } catch (IOException e) {
+            // e.g. Windows refuses while the mappings are not garbage collected; the padding is skipped on reopen
+            truncated = false;
+        }
+        this.channel.close();
+        this.channel = null;
+        if (truncated) {
+            Files.deleteIfExists(this.marker);
+        } else {
+            Files.writeString(this.marker, Long.toString(length), StandardCharsets.US_ASCII);
+        }
+    }
+
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (this.channel != null) {
+                closeChannel();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
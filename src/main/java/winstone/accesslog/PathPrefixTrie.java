@@ -0,0 +1,82 @@
+package winstone.accesslog;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of path prefixes that can tell in one pass over a path whether it starts with any of them.
+ * Prefixes are matched character by character, so {@code /static} also matches
+ * {@code /staticfiles}; use {@code /static/} to match a directory only.
+ */
+final class PathPrefixTrie {
+
+    private static final class Node {
+        /** Children for ASCII characters, which is what paths are made of almost always. */
+        Node[] ascii;
+        /** Children for anything else. */
+        Map<Character, Node> other;
+        boolean terminal;
+
+        Node child(char c) {
+            if (c < 128) {
+                return ascii == null ? null : ascii[c];
+            }
+            return other == null ? null : other.get(c);
+        }
+
+        Node addChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                if (c < 128) {
+                    if (ascii == null) {
+                        ascii = new Node[128];
+                    }
+                    ascii[c] = child;
+                } else {
+                    if (other == null) {
+                        other = new HashMap<>();
+                    }
+                    other.put(c, child);
+                }
+            }
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+    private boolean empty = true;
+
+    void add(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.addChild(prefix.charAt(i));
+        }
+        node.terminal = true;
+        empty = false;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Whether the path starts with one of the prefixes.
+     */
+    boolean matches(String path) {
+        Node node = root;
+        if (node.terminal) {
+            return true;
+        }
+        for (int i = 0; i < path.length(); i++) {
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,301 @@
+package winstone.accesslog;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import winstone.Logger;
+import winstone.RotatingFileOutputStream;
+import winstone.WinstoneResourceBundle;
+import winstone.cmdline.Option;
+import winstone.cmdline.RotationInterval;
+
+/**
+ * Instead of a line per request, counts requests per method, path prefix and status class, and
+ * writes one JSON line per interval:
+ *
+ * <pre>{@code
+ * {"start":"2024-03-05T13:42:00+01:00","end":"2024-03-05T13:43:00+01:00","rollups":[
+ *  {"method":"GET","path":"/job/{id}","status":"2xx","count":1200,"bytesOut":3456789,"bytesIn":0,
+ *   "latency":{"p50":512,"p90":2048,"p99":16384,"max":15102}}]}
+ * }</pre>
+ *
+ * Latencies are in microseconds; percentiles are the upper bound of a power-of-two histogram bucket.
+ * Paths are cut to {@code --rollupAccessLogger.pathDepth} segments, and segments that look like
+ * numbers or hashes are replaced by {@code {id}} so that they do not each get their own rollup.
+ */
+public class RollupAccessLogger extends AbstractLifeCycle implements RequestLog {
+
+    /** Beyond this many rollups per interval, new paths are counted as {@code (other)}. */
+    private static final int MAX_ROLLUPS = 1000;
+
+    /** How long in-flight requests get to finish updating an interval before it is written. */
+    private static final long GRACE_MILLIS = 1000;
+
+    private static final Set<String> METHODS =
+            Set.of("GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE", "CONNECT", "PRI");
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
+
+    private static final class Key {
+        final String method;
+        final String path;
+        final int statusClass;
+
+        Key(String method, String path, int statusClass) {
+            this.method = method;
+            this.path = path;
+            this.statusClass = statusClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return statusClass == key.statusClass && method.equals(key.method) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * method.hashCode() + path.hashCode()) + statusClass;
+        }
+    }
+
+    private static final class Rollup {
+        final LongAdder count = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+        /** Bucket i counts latencies below 2^i microseconds. */
+        final AtomicLongArray latencies = new AtomicLongArray(40);
+
+        void add(long latencyMicros, long out, long in) {
+            count.increment();
+            bytesOut.add(out);
+            bytesIn.add(in);
+            maxLatency.accumulate(latencyMicros);
+            int bucket = 64 - Long.numberOfLeadingZeros(Math.max(latencyMicros, 0));
+            latencies.incrementAndGet(Math.min(bucket, latencies.length() - 1));
+        }
+
+        long percentile(long total, double fraction) {
+            long threshold = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < latencies.length(); i++) {
+                seen += latencies.get(i);
+                if (seen >= threshold) {
+                    return Math.min(1L << i, maxLatency.get());
+                }
+            }
+            return maxLatency.get();
+        }
+    }
+
+    private static final class Interval {
+        final long start = System.currentTimeMillis();
+        final Map<Key, Rollup> rollups = new ConcurrentHashMap<>();
+    }
+
+    private final String fileName;
+    private final int pathDepth;
+    private final long intervalMillis;
+    private final AtomicReference<Interval> current = new AtomicReference<>(new Interval());
+    private ScheduledExecutorService scheduler;
+    private OutputStream outStream;
+
+    @SuppressFBWarnings(
+            value = "PATH_TRAVERSAL_IN",
+            justification = "false positive, webAppName come from command line")
+    public RollupAccessLogger(String webAppName, Map<String, String> startupArgs) throws IOException {
+        this.fileName = WinstoneResourceBundle.globalReplace(
+                Option.ROLLUP_ACCESS_LOGGER_FILE.get(startupArgs), new String[][] {{"###webapp###", webAppName}});
+        this.pathDepth = Math.max(0, Option.ROLLUP_ACCESS_LOGGER_PATH_DEPTH.get(startupArgs));
+        this.intervalMillis =
+                TimeUnit.SECONDS.toMillis(Math.max(1, Option.ROLLUP_ACCESS_LOGGER_INTERVAL.get(startupArgs)));
+
+        try {
+            Path file = Paths.get(this.fileName).toAbsolutePath();
+            Files.createDirectories(file.getParent());
+            this.outStream = new RotatingFileOutputStream(file, -1, RotationInterval.NONE, -1, false);
+        } catch (InvalidPathException e) {
+            throw new IOException(e);
+        }
+        Logger.log(
+                Level.FINER,
+                SimpleAccessLogger.ACCESSLOG_RESOURCES,
+                "SimpleAccessLogger.Init",
+                this.fileName,
+                "rollup");
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        this.current.set(new Interval());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Access log rollup (" + this.fileName + ")");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(this::roll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void log(Request request, Response response) {
+        String method = request.getMethod();
+        if (!METHODS.contains(method)) {
+            method = "OTHER";
+        }
+        int statusClass = Math.max(0, Math.min(response.getStatus() / 100, 9));
+        Map<Key, Rollup> rollups = this.current.get().rollups;
+        Key key = new Key(method, normalize(request.getHttpURI().getPath(), this.pathDepth), statusClass);
+        Rollup rollup = rollups.get(key);
+        if (rollup == null) {
+            if (rollups.size() >= MAX_ROLLUPS) {
+                key = new Key(method, "(other)", statusClass);
+            }
+            rollup = rollups.computeIfAbsent(key, k -> new Rollup());
+        }
+        rollup.add(
+                AccessLogTemplate.latencyMicros(request),
+                Response.getContentBytesWritten(response),
+                Request.getContentBytesRead(request));
+    }
+
+    /**
+     * Keeps the first {@code depth} segments of the path, replacing the ones that look like
+     * identifiers.
+     */
+    static String normalize(String path, int depth) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder normalized = new StringBuilder();
+        int start = path.charAt(0) == '/' ? 1 : 0;
+        for (int segments = 0; segments < depth && start < path.length(); segments++) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            normalized.append('/');
+            if (isIdentifier(path, start, end)) {
+                normalized.append("{id}");
+            } else {
+                normalized.append(path, start, end);
+            }
+            start = end + 1;
+        }
+        return normalized.length() == 0 ? "/" : normalized.toString();
+    }
+
+    /**
+     * Numbers, and hex strings or UUIDs of at least 16 characters.
+     */
+    private static boolean isIdentifier(String path, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        boolean digitsOnly = true;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            boolean hex = digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+            if (!hex) {
+                return false;
+            }
+            digitsOnly &= digit;
+        }
+        return digitsOnly || end - start >= 16;
+    }
+
+    private void roll() {
+        Interval finished = this.current.getAndSet(new Interval());
+        long end = System.currentTimeMillis();
+        this.scheduler.schedule(() -> write(finished, end), GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void write(Interval interval, long end) {
+        if (interval.rollups.isEmpty()) {
+            return;
+        }
+        LogBuffer out = LogBuffer.get();
+        out.append("{\"start\":\"")
+                .append(TIME_FORMAT.format(Instant.ofEpochMilli(interval.start)))
+                .append("\",\"end\":\"")
+                .append(TIME_FORMAT.format(Instant.ofEpochMilli(end)))
+                .append("\",\"rollups\":[");
+        boolean first = true;
+        for (Map.Entry<Key, Rollup> entry : interval.rollups.entrySet()) {
+            Key key = entry.getKey();
+            Rollup rollup = entry.getValue();
+            long count = rollup.count.sum();
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            JsonAccessLogFormat.string(out.append("{\"method\":"), key.method);
+            JsonAccessLogFormat.string(out.append(",\"path\":"), key.path);
+            out.append(",\"status\":\"").append(key.statusClass).append("xx\"");
+            out.append(",\"count\":").append(count);
+            out.append(",\"bytesOut\":").append(rollup.bytesOut.sum());
+            out.append(",\"bytesIn\":").append(rollup.bytesIn.sum());
+            out.append(",\"latency\":{\"p50\":").append(rollup.percentile(count, 0.5));
+            out.append(",\"p90\":").append(rollup.percentile(count, 0.9));
+            out.append(",\"p99\":").append(rollup.percentile(count, 0.99));
+            out.append(",\"max\":").append(rollup.maxLatency.get()).append("}}");
+        }
+        out.append("]}\n");
+        synchronized (this) {
+            if (this.outStream == null) {
+                return;
+            }
+            try {
+                this.outStream.write(out.array(), 0, out.size());
+            } catch (IOException err) {
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to write to access log " + this.fileName, err);
+            }
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        Logger.log(Level.FINER, SimpleAccessLogger.ACCESSLOG_RESOURCES, "SimpleAccessLogger.Close", this.fileName);
+        // intervals that were rolled but not written yet still are, the periodic roll is cancelled
+        this.scheduler.shutdown();
+        this.scheduler.awaitTermination(2 * GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        write(this.current.getAndSet(new Interval()), System.currentTimeMillis());
+        synchronized (this) {
+            if (this.outStream != null) {
+                try {
+                    this.outStream.close();
+                } catch (IOException err) {
+                    Logger.logDirectMessage(Level.WARNING, null, "Failed to close access logger output stream", err);
+                }
+                this.outStream = null;
+            }
+        }
+    }
+}
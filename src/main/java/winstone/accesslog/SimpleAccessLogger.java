@@ -10,48 +10,56 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
-import java.nio.file.StandardOpenOption;
-import java.security.Principal;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Map;
 import java.util.logging.Level;
-import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import winstone.Logger;
+import winstone.RotatingFileOutputStream;
 import winstone.WinstoneResourceBundle;
 import winstone.cmdline.Option;
 
 /**
  * Simulates an apache "combined" style logger, which logs User-Agent, Referer, etc
  *
+ * <p>With {@code --simpleAccessLogger.async}, lines are handed to an {@link AsyncLogWriter} and
+ * written in batches by a background thread instead of on the request thread. The file can be
+ * rotated by size and/or time, see {@link RotatingFileOutputStream}. Besides patterns, the
+ * {@code json} and {@code binary} formats write newline-delimited JSON or length-prefixed records
+ * (see {@link BinaryAccessLogFormat}) for log shippers. Requests can be left out by path, method
+ * or status, or sampled, see {@link AccessLogFilter}. With {@code --simpleAccessLogger.mmap}, lines
+ * are copied into a memory mapped file by the request threads, see {@link MappedLogFile}.
+ *
  * @author <a href="mailto:rick_knowles@hotmail.com">Rick Knowles</a>
  * @version $Id: SimpleAccessLogger.java,v 1.5 2006/03/24 17:24:19 rickknowles Exp $
  */
+@ManagedObject("Winstone access log")
 public class SimpleAccessLogger extends AbstractLifeCycle implements RequestLog {
 
     public static final WinstoneResourceBundle ACCESSLOG_RESOURCES =
             new WinstoneResourceBundle("winstone.accesslog.LocalStrings");
 
-    private static final DateFormat DF = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
     private static final String COMMON = "###ip### - ###user### ###time### \"###uriLine###\" ###status### ###size###";
     private static final String COMBINED = COMMON + " \"###referer###\" \"###userAgent###\"";
     private static final String RPROXYCOMBINED = "###x-forwarded-for### " + COMBINED;
     private static final String RESIN = COMMON + " \"###userAgent###\"";
 
+    /** How long stopping waits for the async writer to write out queued lines. */
+    private static final long ASYNC_CLOSE_TIMEOUT = 10000;
+
     private OutputStream outStream;
-    private PrintWriter outWriter;
-    private String pattern;
+    private MappedLogFile mappedFile;
+    private final AccessLogFormat format;
+    private final AccessLogFilter filter;
+    private final AsyncLogWriter asyncWriter;
     private String fileName;
+    private volatile boolean writeFailed;
 
     @SuppressFBWarnings(
             value = "PATH_TRAVERSAL_IN",
@@ -61,17 +69,23 @@ public class SimpleAccessLogger extends AbstractLifeCycle implements RequestLog
         // Get pattern
         String patternType = Option.SIMPLE_ACCESS_LOGGER_FORMAT.get(startupArgs);
         if (patternType.equalsIgnoreCase("combined")) {
-            this.pattern = COMBINED;
+            this.format = AccessLogTemplate.compile(COMBINED);
         } else if (patternType.equalsIgnoreCase("common")) {
-            this.pattern = COMMON;
+            this.format = AccessLogTemplate.compile(COMMON);
         } else if (patternType.equalsIgnoreCase("resin")) {
-            this.pattern = RESIN;
+            this.format = AccessLogTemplate.compile(RESIN);
         } else if (patternType.equalsIgnoreCase("rproxycombined")) {
-            this.pattern = RPROXYCOMBINED;
+            this.format = AccessLogTemplate.compile(RPROXYCOMBINED);
+        } else if (patternType.equalsIgnoreCase("json")) {
+            this.format = new JsonAccessLogFormat();
+        } else if (patternType.equalsIgnoreCase("binary")) {
+            this.format = new BinaryAccessLogFormat();
         } else {
-            this.pattern = patternType;
+            this.format = AccessLogTemplate.compile(patternType);
         }
 
+        this.filter = AccessLogFilter.create(startupArgs);
+
         // Get filename
         String filePattern = Option.SIMPLE_ACCESS_LOGGER_FILE.get(startupArgs);
         this.fileName =
@@ -85,75 +99,134 @@ public class SimpleAccessLogger extends AbstractLifeCycle implements RequestLog
             Logger.logDirectMessage(Level.WARNING, null, "Failed to mkdirs " + parentFile.getAbsolutePath(), ex);
         }
         try {
-            this.outStream = Files.newOutputStream(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (Option.SIMPLE_ACCESS_LOGGER_MMAP.get(startupArgs)) {
+                this.mappedFile = new MappedLogFile(
+                        file.toPath(),
+                        getChunkSize(startupArgs),
+                        Option.SIMPLE_ACCESS_LOGGER_ROTATE_SIZE.get(startupArgs) * 1024L * 1024L,
+                        Option.SIMPLE_ACCESS_LOGGER_ROTATE_INTERVAL.get(startupArgs),
+                        Option.SIMPLE_ACCESS_LOGGER_MAX_HISTORY.get(startupArgs),
+                        Option.SIMPLE_ACCESS_LOGGER_COMPRESS.get(startupArgs));
+            } else {
+                this.outStream = new RotatingFileOutputStream(
+                        file.toPath(),
+                        Option.SIMPLE_ACCESS_LOGGER_ROTATE_SIZE.get(startupArgs) * 1024L * 1024L,
+                        Option.SIMPLE_ACCESS_LOGGER_ROTATE_INTERVAL.get(startupArgs),
+                        Option.SIMPLE_ACCESS_LOGGER_MAX_HISTORY.get(startupArgs),
+                        Option.SIMPLE_ACCESS_LOGGER_COMPRESS.get(startupArgs));
+            }
         } catch (InvalidPathException e) {
             throw new IOException(e);
         }
-        this.outWriter = new PrintWriter(new OutputStreamWriter(this.outStream, StandardCharsets.UTF_8), true);
+
+        if (Option.SIMPLE_ACCESS_LOGGER_ASYNC.get(startupArgs)) {
+            this.asyncWriter = new AsyncLogWriter(
+                    this.fileName,
+                    Option.SIMPLE_ACCESS_LOGGER_ASYNC_BUFFER_SIZE.get(startupArgs),
+                    Option.SIMPLE_ACCESS_LOGGER_ASYNC_OVERFLOW_POLICY.get(startupArgs),
+                    Option.SIMPLE_ACCESS_LOGGER_FLUSH_SIZE.get(startupArgs),
+                    Option.SIMPLE_ACCESS_LOGGER_FLUSH_INTERVAL.get(startupArgs),
+                    this::write);
+        } else {
+            this.asyncWriter = null;
+        }
 
         Logger.log(Level.FINER, ACCESSLOG_RESOURCES, "SimpleAccessLogger.Init", this.fileName, patternType);
     }
 
+    /**
+     * The chunk size in bytes, from 1 MB to 1 GB: it is used as a divisor, and a single mapping
+     * cannot be 2 GB or larger.
+     */
+    private static long getChunkSize(Map<String, String> startupArgs) {
+        int megabytes = Option.SIMPLE_ACCESS_LOGGER_MMAP_CHUNK_SIZE.get(startupArgs);
+        return Math.max(1, Math.min(megabytes, 1024)) * 1024L * 1024L;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (this.asyncWriter != null) {
+            this.asyncWriter.start();
+        }
+    }
+
     @Override
     public void log(Request request, Response response) {
-        String uriLine = request.getMethod() + " " + request.getHttpURI().getPath() + " "
-                + request.getConnectionMetaData().getProtocol();
-        int status = response.getStatus();
-        long size = Response.getContentBytesWritten(response);
-        String date;
-        synchronized (DF) {
-            date = DF.format(new Date());
+        if (this.filter != null && !this.filter.accept(request, response)) {
+            return;
         }
+        LogBuffer buffer = LogBuffer.get();
+        this.format.format(buffer, request, response);
+        if (this.asyncWriter != null) {
+            this.asyncWriter.publish(buffer.array(), buffer.size());
+        } else {
+            write(buffer.array(), 0, buffer.size());
+        }
+    }
 
-        // mimic
-        // https://github.com/jetty/jetty.project/blob/c5b2533fdecce21b54c6fbaf36f79bc3ba909775/jetty-core/jetty-server/src/main/java/org/eclipse/jetty/server/CustomRequestLog.java#L1093-L1099
-        Request.AuthenticationState authenticationState = Request.getAuthenticationState(request);
-        Principal principal = authenticationState == null ? null : authenticationState.getUserPrincipal();
-        String remoteUser = principal == null ? "-" : principal.getName();
-
-        HttpFields httpFields = request.getHeaders();
-        String logLine = WinstoneResourceBundle.globalReplace(this.pattern, new String[][] {
-            {"###x-forwarded-for###", nvl(httpFields.get("X-Forwarded-For"))},
-            {"###x-forwarded-host###", nvl(httpFields.get("X-Forwarded-Host"))},
-            {"###x-forwarded-proto###", nvl(httpFields.get("X-Forwarded-Proto"))},
-            {"###x-forwarded-protocol###", nvl(httpFields.get("X-Forwarded-Protocol"))},
-            {"###x-forwarded-server###", nvl(httpFields.get("X-Forwarded-Server"))},
-            {"###x-forwarded-ssl###", nvl(httpFields.get("X-Forwarded-Ssl"))},
-            {"###x-requested-with###", nvl(httpFields.get("X-Requested-With"))},
-            {"###x-do-not-track###", nvl(httpFields.get("X-Do-Not-Track"))},
-            {"###dnt###", nvl(httpFields.get("DNT"))},
-            {"###via###", nvl(httpFields.get("Via"))},
-            {"###ip###", Request.getRemoteAddr(request)},
-            {"###user###", nvl(remoteUser)},
-            {"###time###", "[" + date + "]"},
-            {"###uriLine###", uriLine},
-            {"###status###", "" + status},
-            {"###size###", "" + size},
-            {"###referer###", nvl(httpFields.get("Referer"))},
-            {"###userAgent###", nvl(httpFields.get("User-Agent"))}
-        });
-        this.outWriter.println(logLine);
+    /**
+     * Whether the format uses {@code ###queued###}, see {@link DispatchTimeHandler}.
+     */
+    public boolean needsDispatchTime() {
+        return this.format.needsDispatchTime();
     }
 
-    private static String nvl(String input) {
-        return input == null ? "-" : input;
+    /**
+     * Number of lines that were not written because the async buffer was full and the overflow
+     * policy is {@code drop}.
+     */
+    @ManagedAttribute("Number of access log lines dropped because the async buffer was full")
+    public long getDroppedCount() {
+        return this.asyncWriter == null ? 0 : this.asyncWriter.getDroppedCount();
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        try {
+            if (this.mappedFile != null) {
+                // does its own, finer grained, locking
+                this.mappedFile.write(bytes, offset, length);
+            } else {
+                synchronized (this) {
+                    if (this.outStream != null) {
+                        this.outStream.write(bytes, offset, length);
+                    }
+                }
+            }
+            if (this.writeFailed) {
+                // the next failure is reported again
+                this.writeFailed = false;
+            }
+        } catch (IOException | RuntimeException err) {
+            // report once rather than for every request, e.g. while the disk is full
+            if (!this.writeFailed) {
+                this.writeFailed = true;
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to write to access log " + this.fileName, err);
+            }
+        }
     }
 
     @Override
     protected void doStop() throws Exception {
         Logger.log(Level.FINER, ACCESSLOG_RESOURCES, "SimpleAccessLogger.Close", this.fileName);
-        if (this.outWriter != null) {
-            this.outWriter.flush();
-            this.outWriter.close();
-            this.outWriter = null;
+        if (this.asyncWriter != null) {
+            this.asyncWriter.close(ASYNC_CLOSE_TIMEOUT);
         }
-        if (this.outStream != null) {
+        if (this.mappedFile != null) {
             try {
-                this.outStream.close();
+                this.mappedFile.close();
             } catch (IOException err) {
-                Logger.logDirectMessage(Level.WARNING, null, "Failed to close access logger output stream", err);
+                Logger.logDirectMessage(Level.WARNING, null, "Failed to close access log " + this.fileName, err);
+            }
+        }
+        synchronized (this) {
+            if (this.outStream != null) {
+                try {
+                    this.outStream.close();
+                } catch (IOException err) {
+                    Logger.logDirectMessage(Level.WARNING, null, "Failed to close access logger output stream", err);
+                }
+                this.outStream = null;
             }
-            this.outStream = null;
         }
         this.fileName = null;
     }
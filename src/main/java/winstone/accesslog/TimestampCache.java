@@ -0,0 +1,68 @@
+package winstone.accesslog;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats timestamps with a second-resolution pattern, formatting each second only once. The
+ * formatted value of the current second is published through a volatile field, so all threads
+ * read it without locking; the first thread to observe a new second formats and publishes it.
+ * Two threads may occasionally both format the same new second, which is harmless because
+ * {@link DateTimeFormatter} is immutable.
+ *
+ * <p>The pattern must not contain fields finer than a second, as those would be cached too.
+ */
+public final class TimestampCache {
+
+    private static final class Entry {
+        final long second;
+        final String text;
+
+        Entry(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private final DateTimeFormatter formatter;
+    private volatile Entry current = new Entry(Long.MIN_VALUE, null);
+
+    /**
+     * @param pattern a {@link DateTimeFormatter} pattern, formatted in the default locale and time zone
+     */
+    public TimestampCache(String pattern) {
+        this(DateTimeFormatter.ofPattern(pattern));
+    }
+
+    /**
+     * @param formatter the formatter to use; if it has no zone, the default time zone is used
+     */
+    public TimestampCache(DateTimeFormatter formatter) {
+        this.formatter = formatter.getZone() == null ? formatter.withZone(ZoneId.systemDefault()) : formatter;
+    }
+
+    /**
+     * Formats the current time.
+     */
+    public String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * Formats the second that the given time falls into.
+     */
+    public String format(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000);
+        Entry entry = current;
+        if (entry.second == second) {
+            return entry.text;
+        }
+        String text = formatter.format(Instant.ofEpochSecond(second));
+        if (second > entry.second) {
+            // do not let a thread that read the clock slightly earlier replace a newer second
+            current = new Entry(second, text);
+        }
+        return text;
+    }
+}
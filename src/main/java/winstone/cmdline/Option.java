@@ -36,13 +36,32 @@ public class Option<T> {
 
     public static final OFile WEBROOT = file("webroot");
     public static final OFile WARFILE = file("warfile");
+    public static final OBoolean EXTRACT_WAR = bool("extractWar", true);
+    public static final OInt WAR_EXTRACTION_THREADS = integer("warExtractionThreads", 0);
+    public static final OFile EXTRACTION_CACHE = file("extractionCache");
     public static final OFile JAVA_HOME = file("javaHome");
     public static final OFile CONFIG = file("config");
     public static final OString PREFIX = string("prefix", "");
     public static final OFile COMMON_LIB_FOLDER = file("commonLibFolder");
+    public static final OFile STARTUP_REPORT = file("startupReport");
+    public static final OBoolean TRAINING_RUN = bool("trainingRun", false);
+    public static final OString TRAINING_REQUESTS = string("trainingRequests", "/");
+    public static final OInt TRAINING_ITERATIONS = integer("trainingIterations", 10);
+    public static final OFile TRAINING_ARCHIVE = file("trainingArchive");
     public static final OFile LOGFILE = file("logfile");
+    public static final OInt LOGFILE_ROTATE_SIZE = integer("logfileRotateSize", -1);
+    public static final OEnum<RotationInterval> LOGFILE_ROTATE_INTERVAL =
+            enumeration("logfileRotateInterval", RotationInterval.class, RotationInterval.NONE);
+    public static final OInt LOGFILE_MAX_HISTORY = integer("logfileMaxHistory", -1);
+    public static final OBoolean LOGFILE_COMPRESS = bool("logfileCompress", true);
+    public static final OInt LOGFILE_FLUSH_SIZE = integer("logfileFlushSize", 0);
+    public static final OInt LOGFILE_FLUSH_INTERVAL = integer("logfileFlushInterval", 0);
     public static final OBoolean LOG_THROWING_LINE_NO = bool("logThrowingLineNo", false);
     public static final OBoolean LOG_THROWING_THREAD = bool("logThrowingThread", false);
+    public static final OBoolean LOG_ASYNC = bool("logAsync", false);
+    public static final OInt LOG_ASYNC_QUEUE_SIZE = integer("logAsyncQueueSize", 8192);
+    public static final OEnum<OverflowPolicy> LOG_ASYNC_OVERFLOW_POLICY =
+            enumeration("logAsyncOverflowPolicy", OverflowPolicy.class, OverflowPolicy.BLOCK);
     public static final OInt DEBUG = new ODebugInt("debug", 5);
 
     // these are combined with protocol to form options
@@ -110,6 +129,31 @@ public class Option<T> {
     public static final OString SIMPLE_ACCESS_LOGGER_FORMAT = string("simpleAccessLogger.format", "combined");
     public static final OString SIMPLE_ACCESS_LOGGER_FILE =
             string("simpleAccessLogger.file", "logs/###host###/###webapp###_access.log");
+    public static final OBoolean SIMPLE_ACCESS_LOGGER_ASYNC = bool("simpleAccessLogger.async", false);
+    public static final OInt SIMPLE_ACCESS_LOGGER_ASYNC_BUFFER_SIZE =
+            integer("simpleAccessLogger.asyncBufferSize", 8192);
+    public static final OEnum<OverflowPolicy> SIMPLE_ACCESS_LOGGER_ASYNC_OVERFLOW_POLICY =
+            enumeration("simpleAccessLogger.asyncOverflowPolicy", OverflowPolicy.class, OverflowPolicy.BLOCK);
+    public static final OInt SIMPLE_ACCESS_LOGGER_FLUSH_SIZE = integer("simpleAccessLogger.flushSize", 65536);
+    public static final OInt SIMPLE_ACCESS_LOGGER_FLUSH_INTERVAL = integer("simpleAccessLogger.flushInterval", 1000);
+    public static final OInt SIMPLE_ACCESS_LOGGER_ROTATE_SIZE = integer("simpleAccessLogger.rotateSize", -1);
+    public static final OEnum<RotationInterval> SIMPLE_ACCESS_LOGGER_ROTATE_INTERVAL =
+            enumeration("simpleAccessLogger.rotateInterval", RotationInterval.class, RotationInterval.NONE);
+    public static final OInt SIMPLE_ACCESS_LOGGER_MAX_HISTORY = integer("simpleAccessLogger.maxHistory", -1);
+    public static final OBoolean SIMPLE_ACCESS_LOGGER_COMPRESS = bool("simpleAccessLogger.compress", true);
+    public static final OBoolean SIMPLE_ACCESS_LOGGER_MMAP = bool("simpleAccessLogger.mmap", false);
+    public static final OInt SIMPLE_ACCESS_LOGGER_MMAP_CHUNK_SIZE = integer("simpleAccessLogger.mmapChunkSize", 16);
+    public static final OString SIMPLE_ACCESS_LOGGER_INCLUDE_PATHS = string("simpleAccessLogger.includePaths");
+    public static final OString SIMPLE_ACCESS_LOGGER_EXCLUDE_PATHS = string("simpleAccessLogger.excludePaths");
+    public static final OString SIMPLE_ACCESS_LOGGER_INCLUDE_METHODS = string("simpleAccessLogger.includeMethods");
+    public static final OString SIMPLE_ACCESS_LOGGER_EXCLUDE_METHODS = string("simpleAccessLogger.excludeMethods");
+    public static final OString SIMPLE_ACCESS_LOGGER_INCLUDE_STATUS = string("simpleAccessLogger.includeStatus");
+    public static final OString SIMPLE_ACCESS_LOGGER_EXCLUDE_STATUS = string("simpleAccessLogger.excludeStatus");
+    public static final OInt SIMPLE_ACCESS_LOGGER_SAMPLE_RATE = integer("simpleAccessLogger.sampleRate", 1);
+    public static final OString ROLLUP_ACCESS_LOGGER_FILE =
+            string("rollupAccessLogger.file", "logs/###webapp###_rollup.log");
+    public static final OInt ROLLUP_ACCESS_LOGGER_INTERVAL = integer("rollupAccessLogger.interval", 60);
+    public static final OInt ROLLUP_ACCESS_LOGGER_PATH_DEPTH = integer("rollupAccessLogger.pathDepth", 2);
 
     /**
      * Option name without the "--" prefix.
@@ -173,6 +217,10 @@ public class Option<T> {
         return new OClass(name, defaultValue);
     }
 
+    public static <E extends Enum<E>> OEnum<E> enumeration(String name, Class<E> type, E defaultValue) {
+        return new OEnum<>(name, type, defaultValue);
+    }
+
     public static OInt integer(String name) {
         return new OInt(name, -1);
     }
@@ -334,6 +382,29 @@ public class Option<T> {
         }
     }
 
+    public static class OEnum<E extends Enum<E>> extends Option<E> {
+        public OEnum(String name, Class<E> type, E defaultValue) {
+            super(name, type, defaultValue);
+        }
+
+        public E get(Map<String, String> args) {
+            return get(args, defaultValue);
+        }
+
+        public E get(Map<String, String> args, E defaultValue) {
+            String v = args.get(name);
+            if (v == null) {
+                return defaultValue;
+            }
+            for (E e : type.getEnumConstants()) {
+                if (e.name().equalsIgnoreCase(v.trim())) {
+                    return e;
+                }
+            }
+            throw new IllegalArgumentException("Unexpected value for --" + name + ": " + v);
+        }
+    }
+
     //    static {
     //        String[] protocols = {"http","https"};
     //        for (int i=0; i<protocols.length; i++) {
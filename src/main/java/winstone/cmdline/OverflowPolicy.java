@@ -0,0 +1,19 @@
+package winstone.cmdline;
+
+/**
+ * What an asynchronous log writer does with a new record when its bounded buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait until the writer thread has made room.
+     */
+    BLOCK,
+    /**
+     * Discard the record and count it.
+     */
+    DROP,
+    /**
+     * Write the record synchronously on the calling thread, bypassing the buffer.
+     */
+    SPILL,
+}
@@ -0,0 +1,10 @@
+package winstone.cmdline;
+
+/**
+ * How often a log file is rotated regardless of its size.
+ */
+public enum RotationInterval {
+    NONE,
+    HOURLY,
+    DAILY,
+}
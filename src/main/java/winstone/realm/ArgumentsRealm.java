@@ -65,6 +65,6 @@ public class ArgumentsRealm extends HashLoginService {
             }
         }
 
-        Logger.log(Level.FINER, REALM_RESOURCES, "ArgumentsRealm.Initialised", "" + count);
+        Logger.log(Level.FINER, REALM_RESOURCES, "ArgumentsRealm.Initialised", count);
     }
 }
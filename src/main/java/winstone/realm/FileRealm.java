@@ -98,7 +98,7 @@ public class FileRealm extends HashLoginService {
                     }
                 }
             }
-            Logger.log(Level.FINER, REALM_RESOURCES, "FileRealm.Initialised", "" + count);
+            Logger.log(Level.FINER, REALM_RESOURCES, "FileRealm.Initialised", count);
         } catch (java.io.IOException err) {
             throw new WinstoneException(REALM_RESOURCES.getString("FileRealm.ErrorLoading"), err);
         }
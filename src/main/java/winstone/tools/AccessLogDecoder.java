@@ -0,0 +1,52 @@
+package winstone.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+import winstone.WinstoneResourceBundle;
+import winstone.accesslog.AccessLogRecord;
+
+/**
+ * Turns access logs written with {@code --simpleAccessLogger.format=binary} into newline-delimited
+ * JSON on stdout. Reads the given files, or stdin if there are none; gzipped (rotated) files are
+ * detected and decompressed.
+ */
+public class AccessLogDecoder {
+    private static final WinstoneResourceBundle TOOLS_RESOURCES =
+            new WinstoneResourceBundle("winstone.tools.LocalStrings");
+
+    public static void main(String[] argv) throws IOException {
+        OutputStream out = new BufferedOutputStream(System.out, 64 * 1024);
+        if (argv.length == 0) {
+            decode(System.in, out);
+        }
+        for (String arg : argv) {
+            if (arg.startsWith("-")) {
+                System.err.println(TOOLS_RESOURCES.getString("AccessLogDecoder.Usage"));
+                return;
+            }
+            try (InputStream in = Files.newInputStream(Paths.get(arg))) {
+                decode(in, out);
+            }
+        }
+        out.flush();
+    }
+
+    static void decode(InputStream raw, OutputStream out) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(raw, 64 * 1024);
+        in.mark(2);
+        boolean gzip = in.read() == 0x1f && in.read() == 0x8b;
+        in.reset();
+        DataInputStream data = new DataInputStream(gzip ? new BufferedInputStream(new GZIPInputStream(in)) : in);
+        AccessLogRecord record;
+        while ((record = AccessLogRecord.read(data)) != null) {
+            record.writeJson(out);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package winstone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import winstone.cmdline.OverflowPolicy;
+
+class AsyncLogHandlerTest {
+
+    private static class RecordingHandler extends Handler {
+        final List<LogRecord> records = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            records.add(record);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        synchronized List<String> messages() {
+            return records.stream().map(LogRecord::getMessage).collect(Collectors.toList());
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    void writesInOrderFromWriterThread() {
+        RecordingHandler delegate = new RecordingHandler();
+        AsyncLogHandler handler = new AsyncLogHandler(List.of(delegate), 16, OverflowPolicy.BLOCK);
+        java.util.logging.Logger logger = java.util.logging.Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            logger.info("message " + i);
+            expected.add("message " + i);
+        }
+        handler.drain(5000);
+        assertEquals(expected, delegate.messages());
+        assertTrue(delegate.threads.stream().allMatch("Winstone log writer"::equals), delegate.threads.toString());
+        // the caller was inferred before the record was handed over
+        assertEquals(AsyncLogHandlerTest.class.getName(), delegate.records.get(0).getSourceClassName());
+
+        // after draining, records are written synchronously
+        logger.info("late");
+        assertEquals("late", delegate.messages().get(1000));
+        handler.close();
+    }
+
+    @Test
+    void writesLateRecordsAfterQueue() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler delegate = new RecordingHandler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().equals("first")) {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                super.publish(record);
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(List.of(delegate), 16, OverflowPolicy.BLOCK);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        handler.publish(new LogRecord(Level.INFO, "second"));
+        handler.drain(0);
+
+        // published while the writer thread is still busy with the queue
+        Thread late = new Thread(() -> handler.publish(new LogRecord(Level.INFO, "late")));
+        late.start();
+        late.join(200);
+        release.countDown();
+        late.join(5000);
+        assertEquals(List.of("first", "second", "late"), delegate.messages());
+        handler.close();
+    }
+
+    @Test
+    void dropsAndReportsWhenFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler delegate = new RecordingHandler() {
+            @Override
+            public void publish(LogRecord record) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                super.publish(record);
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(List.of(delegate), 1, OverflowPolicy.DROP);
+        handler.publish(new LogRecord(Level.INFO, "taken"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        handler.publish(new LogRecord(Level.INFO, "queued"));
+        handler.publish(new LogRecord(Level.INFO, "dropped"));
+        handler.publish(new LogRecord(Level.INFO, "dropped"));
+        release.countDown();
+        handler.drain(5000);
+        assertEquals(
+                List.of("taken", "queued", "2 log records were dropped because the queue was full"),
+                delegate.messages());
+        handler.close();
+    }
+}
@@ -0,0 +1,97 @@
+package winstone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtractionCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void extractsSameContentOnce() throws Exception {
+        Path cache = dir.resolve("cache");
+        File first = new ExtractionCache(cache.toFile(), 2).get(war("first.war", "hello"));
+        assertEquals("hello", Files.readString(first.toPath().resolve("index.html")));
+        FileTime old = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(first.toPath().resolve("index.html"), old);
+
+        // same content under another name
+        File second = new ExtractionCache(cache.toFile(), 2).get(war("second.war", "hello"));
+        assertEquals(first, second);
+        assertEquals(old, Files.getLastModifiedTime(second.toPath().resolve("index.html")));
+
+        File other = new ExtractionCache(cache.toFile(), 2).get(war("other.war", "bye"));
+        assertFalse(first.equals(other));
+        assertEquals("bye", Files.readString(other.toPath().resolve("index.html")));
+    }
+
+    @Test
+    void rehashesOnlyWhenWarChanges() throws Exception {
+        Path cache = dir.resolve("cache");
+        File war = war("test.war", "hello");
+        FileTime time = Files.getLastModifiedTime(war.toPath());
+        File first = new ExtractionCache(cache.toFile(), 2).get(war);
+
+        // same size and modification time, so the remembered hash is used
+        war("test.war", "howdy");
+        Files.setLastModifiedTime(war.toPath(), time);
+        assertEquals(first, new ExtractionCache(cache.toFile(), 2).get(war));
+
+        Files.setLastModifiedTime(war.toPath(), FileTime.fromMillis(time.toMillis() + 2000));
+        File second = new ExtractionCache(cache.toFile(), 2).get(war);
+        assertFalse(first.equals(second));
+        assertEquals("howdy", Files.readString(second.toPath().resolve("index.html")));
+    }
+
+    @Test
+    void linksIntoWebroot() throws Exception {
+        File extracted = new ExtractionCache(dir.resolve("cache").toFile(), 2).get(war("test.war", "hello"));
+        Path webroot = dir.resolve("webroot");
+        ExtractionCache.link(extracted, webroot.toFile());
+
+        assertEquals("hello", Files.readString(webroot.resolve("index.html")));
+        assertEquals("<web-app/>", Files.readString(webroot.resolve("WEB-INF/web.xml")));
+        assertTrue(Files.isSameFile(extracted.toPath().resolve("index.html"), webroot.resolve("index.html")));
+        assertFalse(Files.exists(webroot.resolve(WarExtractor.MANIFEST)));
+        if (Files.getFileStore(webroot).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            // shared with the cache, so they must not be writable
+            assertFalse(Files.getPosixFilePermissions(webroot.resolve("index.html"))
+                    .contains(PosixFilePermission.OWNER_WRITE));
+        }
+    }
+
+    private File war(String name, String index) throws IOException {
+        Path war = dir.resolve(name);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(war))) {
+            out.putNextEntry(entry("index.html"));
+            out.write(index.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            out.putNextEntry(entry("WEB-INF/web.xml"));
+            out.write("<web-app/>".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return war.toFile();
+    }
+
+    /** With a fixed time, so that the same content makes the same WAR. */
+    private static ZipEntry entry(String name) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(1_000_000_000_000L);
+        return entry;
+    }
+}
@@ -12,12 +12,15 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyStore;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import org.eclipse.jetty.server.ServerConnector;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.jvnet.hudson.test.Issue;
 import winstone.cmdline.Option;
 
@@ -124,6 +127,36 @@ class LauncherTest extends AbstractWinstoneTest {
         assertEquals(1345, response.body().length);
     }
 
+    @Test
+    void servesFromWarWithoutExtraction(@TempDir Path dir) throws Exception {
+        Path webroot = dir.resolve("webroot");
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("webroot", webroot.toString());
+        args.put("prefix", "/");
+        args.put("httpPort", "0");
+        args.put("extractWar", "false");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        HttpClient client = HttpClient.newHttpClient();
+
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(new URI("http://127.0.0.2:" + port + "/lipsum.txt"))
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+        assertThat(response.body(), startsWith("Lorem ipsum dolor sit amet"));
+
+        response = client.send(
+                HttpRequest.newBuilder(new URI("http://127.0.0.2:" + port + "/CountRequestsServlet"))
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+        assertFalse(Files.exists(webroot));
+    }
+
     @Test
     void testHttpsKeyStoreTypeOption() {
         Map<String, String> args = new HashMap<>();
@@ -0,0 +1,56 @@
+package winstone;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import winstone.cmdline.RotationInterval;
+
+class LogFileOutputStreamTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesWhenBufferIsFull() throws Exception {
+        Path file = dir.resolve("winstone.log");
+        try (LogFileOutputStream out = new LogFileOutputStream(
+                new RotatingFileOutputStream(file, -1, RotationInterval.NONE, -1, false), 8, 60_000)) {
+            out.write("12345".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("", Files.readString(file));
+            out.write("6789".getBytes(StandardCharsets.UTF_8));
+            assertEquals("12345", Files.readString(file));
+            out.write("0123456789".getBytes(StandardCharsets.UTF_8));
+            assertEquals("123456789" + "0123456789", Files.readString(file));
+        }
+    }
+
+    @Test
+    void writesAfterFlushInterval() throws Exception {
+        Path file = dir.resolve("winstone.log");
+        try (LogFileOutputStream out = new LogFileOutputStream(
+                new RotatingFileOutputStream(file, -1, RotationInterval.NONE, -1, false), 8192, 100)) {
+            out.write("line\n".getBytes(StandardCharsets.UTF_8));
+            await().atMost(Duration.ofSeconds(5)).until(() -> Files.readString(file).equals("line\n"));
+        }
+    }
+
+    @Test
+    void writesThroughAfterStopBuffering() throws Exception {
+        Path file = dir.resolve("winstone.log");
+        try (LogFileOutputStream out = new LogFileOutputStream(
+                new RotatingFileOutputStream(file, -1, RotationInterval.NONE, -1, false), 8192, 60_000)) {
+            out.write("buffered\n".getBytes(StandardCharsets.UTF_8));
+            out.stopBuffering();
+            assertEquals("buffered\n", Files.readString(file));
+            out.write("direct\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("buffered\ndirect\n", Files.readString(file));
+        }
+    }
+}
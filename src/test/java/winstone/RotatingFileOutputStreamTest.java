@@ -0,0 +1,104 @@
+package winstone;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import winstone.cmdline.RotationInterval;
+
+class RotatingFileOutputStreamTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rotatesBySizeAndCompresses() throws Exception {
+        Path file = dir.resolve("access.log");
+        try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, 10, RotationInterval.NONE, -1, true)) {
+            out.write("line one\n".getBytes(StandardCharsets.UTF_8));
+            out.write("line two\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("line two\n", Files.readString(file));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> segments().size() == 1
+                && segments().get(0).getFileName().toString().endsWith(".gz"));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segments().get(0)))) {
+            assertEquals("line one\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void keepsMaxHistory() throws Exception {
+        Path file = dir.resolve("access.log");
+        try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, 1, RotationInterval.NONE, 2, false)) {
+            for (int i = 0; i < 5; i++) {
+                out.write(("" + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals("4", Files.readString(file));
+        await().atMost(Duration.ofSeconds(5)).until(() -> segments().size() == 2);
+    }
+
+    @Test
+    void keepsWritingWhenRotationFails() throws Exception {
+        // the name of the segment would be longer than file systems allow, so the rename fails
+        Path file = dir.resolve("a".repeat(240) + ".log");
+        try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, 10, RotationInterval.NONE, -1, false)) {
+            out.write("line one\n".getBytes(StandardCharsets.UTF_8));
+            out.write("line two\n".getBytes(StandardCharsets.UTF_8));
+            out.write("line three\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("line one\nline two\nline three\n", Files.readString(file));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void recreatesDeletedFile() throws Exception {
+        Path file = dir.resolve("access.log");
+        try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, -1, RotationInterval.NONE, -1, false)) {
+            out.write("before\n".getBytes(StandardCharsets.UTF_8));
+            Files.delete(file);
+            await().atMost(Duration.ofSeconds(5)).until(() -> {
+                out.write("after\n".getBytes(StandardCharsets.UTF_8));
+                return Files.exists(file);
+            });
+        }
+        assertEquals("after\n", Files.readString(file));
+    }
+
+    @Test
+    void computesNextRotation() {
+        ZoneId zone = ZoneId.systemDefault();
+        long now = LocalDateTime.of(2024, 3, 5, 13, 42, 7).atZone(zone).toInstant().toEpochMilli();
+        assertEquals(
+                LocalDateTime.of(2024, 3, 5, 14, 0).atZone(zone).toInstant().toEpochMilli(),
+                LogArchiver.nextRotation(RotationInterval.HOURLY, now));
+        assertEquals(
+                LocalDateTime.of(2024, 3, 6, 0, 0).atZone(zone).toInstant().toEpochMilli(),
+                LogArchiver.nextRotation(RotationInterval.DAILY, now));
+        assertEquals(Long.MAX_VALUE, LogArchiver.nextRotation(RotationInterval.NONE, now));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("access.log."))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
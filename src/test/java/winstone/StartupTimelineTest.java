@@ -0,0 +1,72 @@
+package winstone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StartupTimelineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void nestsPhasesOpenOnTheSameThread() throws Exception {
+        StartupTimeline timeline = new StartupTimeline();
+        StartupTimeline.Phase launcher = timeline.begin("launcher");
+        StartupTimeline.Phase hosts = timeline.begin("hosts");
+        StartupTimeline.Phase[] other = new StartupTimeline.Phase[1];
+        Thread thread = new Thread(() -> other[0] = timeline.begin("elsewhere"));
+        thread.start();
+        thread.join();
+        try (StartupTimeline.Phase webroot = timeline.begin("webroot")) {
+            assertSame(hosts, webroot.getParent());
+        }
+        hosts.close();
+        StartupTimeline.Phase server = timeline.begin("server");
+        server.close();
+        launcher.close();
+
+        assertNull(launcher.getParent());
+        assertSame(launcher, hosts.getParent());
+        assertSame(launcher, server.getParent());
+        assertNull(other[0].getParent());
+        assertTrue(launcher.getDurationNanos() >= hosts.getDurationNanos() + server.getDurationNanos());
+        assertEquals(-1, other[0].getDurationNanos());
+    }
+
+    @Test
+    void keepsNoPhasesAfterFinish() {
+        StartupTimeline timeline = new StartupTimeline();
+        timeline.begin("server").close();
+        timeline.finish();
+        try (StartupTimeline.Phase reload = timeline.begin("webapp")) {
+            assertEquals("webapp", reload.getName());
+        }
+        assertEquals(1, timeline.getPhases().size());
+    }
+
+    @Test
+    void writesReportAsTree() throws Exception {
+        StartupTimeline timeline = new StartupTimeline();
+        try (StartupTimeline.Phase launcher = timeline.begin("launcher")) {
+            timeline.begin("host \"default\"").close();
+        }
+        timeline.begin("open");
+
+        Path report = dir.resolve("reports/startup.json");
+        timeline.writeReport(report.toFile());
+        String json = Files.readString(report);
+        assertTrue(
+                json.matches("\\{\"phases\":\\[\\{\"name\":\"launcher\",\"startMs\":[0-9.]+,\"durationMs\":[0-9.]+,"
+                        + "\"phases\":\\[\\{\"name\":\"host \\\\\"default\\\\\"\",\"startMs\":[0-9.]+,"
+                        + "\"durationMs\":[0-9.]+,\"phases\":\\[]}]},"
+                        + "\\{\"name\":\"open\",\"startMs\":[0-9.]+,\"durationMs\":null,\"phases\":\\[]}]}\n"),
+                json);
+    }
+}
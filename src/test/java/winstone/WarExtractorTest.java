@@ -0,0 +1,152 @@
+package winstone;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WarExtractorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void extractsAllFiles() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            entries.put("static/" + (i % 7) + "/file-" + i + ".txt", ("content " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] large = new byte[1024 * 1024];
+        random.nextBytes(large);
+        entries.put("WEB-INF/lib/large.jar", large);
+        Path war = war(entries);
+        Path webroot = dir.resolve("webroot");
+
+        assertEquals(entries.size(), new WarExtractor(war.toFile(), webroot.toFile(), 4).extract());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            assertArrayEquals(entry.getValue(), Files.readAllBytes(webroot.resolve(entry.getKey())), entry.getKey());
+        }
+    }
+
+    @Test
+    void copiesStoredEntries() throws Exception {
+        Random random = new Random(7);
+        byte[] jar = new byte[300 * 1024];
+        random.nextBytes(jar);
+        byte[] image = new byte[1000];
+        random.nextBytes(image);
+        Path war = dir.resolve("stored.war");
+        try (OutputStream file = Files.newOutputStream(war)) {
+            // bytes in front of the archive shift every offset
+            file.write("#!/bin/sh\nexec java -jar \"$0\"\n".getBytes(StandardCharsets.UTF_8));
+            try (ZipOutputStream out = new ZipOutputStream(file)) {
+                stored(out, "WEB-INF/lib/lib.jar", jar);
+                out.putNextEntry(new ZipEntry("index.html"));
+                out.write("index".getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+                stored(out, "images/logo.png", image);
+                stored(out, "empty.txt", new byte[0]);
+            }
+        }
+        Path webroot = dir.resolve("webroot");
+
+        assertEquals(4, new WarExtractor(war.toFile(), webroot.toFile(), 2).extract());
+        assertArrayEquals(jar, Files.readAllBytes(webroot.resolve("WEB-INF/lib/lib.jar")));
+        assertArrayEquals(image, Files.readAllBytes(webroot.resolve("images/logo.png")));
+        assertEquals("index", Files.readString(webroot.resolve("index.html")));
+        assertEquals(0, Files.size(webroot.resolve("empty.txt")));
+    }
+
+    @Test
+    void updatesOnlyWhatChanged() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("index.html", "index".getBytes(StandardCharsets.UTF_8));
+        entries.put("css/style.css", "style".getBytes(StandardCharsets.UTF_8));
+        entries.put("old/gone.txt", "gone".getBytes(StandardCharsets.UTF_8));
+        entries.put("WEB-INF/web.xml", "<web-app/>".getBytes(StandardCharsets.UTF_8));
+        Path webroot = dir.resolve("webroot");
+        WarExtractor first = new WarExtractor(war(entries).toFile(), webroot.toFile(), 2);
+        assertFalse(first.readManifest());
+        assertEquals(4, first.extract());
+        FileTime old = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(webroot.resolve("index.html"), old);
+
+        entries.put("css/style.css", "new style".getBytes(StandardCharsets.UTF_8));
+        entries.remove("old/gone.txt");
+        entries.put("js/app.js", "app".getBytes(StandardCharsets.UTF_8));
+        WarExtractor second = new WarExtractor(war(entries).toFile(), webroot.toFile(), 2);
+        assertTrue(second.readManifest());
+        assertEquals(2, second.extract());
+        assertEquals(1, second.getRemovedCount());
+
+        assertEquals(old, Files.getLastModifiedTime(webroot.resolve("index.html")));
+        assertEquals("new style", Files.readString(webroot.resolve("css/style.css")));
+        assertEquals("app", Files.readString(webroot.resolve("js/app.js")));
+        assertFalse(Files.exists(webroot.resolve("old")));
+
+        // a file lost from the webroot is written again
+        Files.delete(webroot.resolve("index.html"));
+        WarExtractor third = new WarExtractor(war(entries).toFile(), webroot.toFile(), 2);
+        assertTrue(third.readManifest());
+        assertEquals(1, third.extract());
+        assertEquals("index", Files.readString(webroot.resolve("index.html")));
+    }
+
+    @Test
+    void rejectsEntriesOutsideOfWebroot() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("index.html", new byte[] {1});
+        entries.put("../evil.txt", new byte[] {2});
+        Path war = war(entries);
+        Path webroot = dir.resolve("webroot");
+
+        IOException e = assertThrows(
+                IOException.class, () -> new WarExtractor(war.toFile(), webroot.toFile(), 4).extract());
+        assertEquals("Bad zip entry: ../evil.txt", e.getMessage());
+        // checked before anything is written
+        assertFalse(Files.exists(webroot.resolve("index.html")));
+        assertFalse(Files.exists(dir.resolve("evil.txt")));
+    }
+
+    private static void stored(ZipOutputStream out, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private Path war(Map<String, byte[]> entries) throws IOException {
+        Path war = dir.resolve("test.war");
+        try (OutputStream file = Files.newOutputStream(war);
+                ZipOutputStream out = new ZipOutputStream(file)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return war;
+    }
+}
@@ -0,0 +1,85 @@
+package winstone;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WebrootTrashTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void movesAsideAndDeletesInBackground() throws Exception {
+        Path webroot = dir.resolve("webroot");
+        populate(webroot);
+        Path outside = Files.writeString(dir.resolve("outside.txt"), "keep");
+        try {
+            Files.createSymbolicLink(webroot.resolve("link"), dir);
+        } catch (IOException | UnsupportedOperationException e) {
+            // not permitted, e.g. on Windows without developer mode
+        }
+
+        assertTrue(WebrootTrash.discard(webroot));
+        assertFalse(Files.exists(webroot));
+        await().atMost(Duration.ofSeconds(10)).until(() -> children().equals(List.of("outside.txt")));
+        // the link was deleted, not followed
+        assertEquals("keep", Files.readString(outside));
+    }
+
+    @Test
+    void leavesSymbolicLinkToCaller() throws Exception {
+        Path target = dir.resolve("target");
+        populate(target);
+        Path webroot = dir.resolve("webroot");
+        try {
+            Files.createSymbolicLink(webroot, target);
+        } catch (IOException | UnsupportedOperationException e) {
+            // not permitted, e.g. on Windows without developer mode
+            return;
+        }
+
+        assertFalse(WebrootTrash.discard(webroot));
+        assertTrue(Files.isSymbolicLink(webroot));
+        assertEquals(List.of("target", "webroot"), children());
+        assertTrue(Files.isRegularFile(target.resolve("dir0/nested/file0")));
+    }
+
+    @Test
+    void collectsLeftovers() throws Exception {
+        Path webroot = dir.resolve("webroot");
+        populate(dir.resolve(".webroot.trash-1234"));
+        populate(webroot);
+        Files.createDirectories(dir.resolve(".other.trash-1234"));
+
+        WebrootTrash.collectLeftovers(webroot);
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> children().equals(List.of(".other.trash-1234", "webroot")));
+    }
+
+    private static void populate(Path root) throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Path sub = Files.createDirectories(root.resolve("dir" + i).resolve("nested"));
+            for (int j = 0; j < 10; j++) {
+                Files.writeString(sub.resolve("file" + j), "content");
+            }
+        }
+    }
+
+    private List<String> children() throws IOException {
+        try (Stream<Path> children = Files.list(dir)) {
+            return children.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
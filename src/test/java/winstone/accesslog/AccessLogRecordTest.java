@@ -0,0 +1,54 @@
+package winstone.accesslog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class AccessLogRecordTest {
+
+    @Test
+    void readsBothVersions() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        // written before latency and bytes in were added
+        log.write(record(1, "/old"));
+        log.write(record(2, "/new", 1500, 42));
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(log.toByteArray()))) {
+            AccessLogRecord old = AccessLogRecord.read(in);
+            assertEquals("/old", old.getPath());
+            assertEquals(404, old.getStatus());
+            assertEquals(-1, old.getLatency());
+            assertEquals(-1, old.getBytesIn());
+            AccessLogRecord current = AccessLogRecord.read(in);
+            assertEquals("/new", current.getPath());
+            assertEquals(1500, current.getLatency());
+            assertEquals(42, current.getBytesIn());
+            assertNull(AccessLogRecord.read(in));
+        }
+    }
+
+    private static byte[] record(int version, String path, long... trailing) {
+        ByteBuffer record = ByteBuffer.allocate(256);
+        record.putInt(0).put((byte) version).putLong(1_700_000_000_000L).putInt(404).putLong(10);
+        for (String value : new String[] {"127.0.0.1", null, "GET", path, "HTTP/1.1", null, null, null}) {
+            if (value == null) {
+                record.putInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                record.putInt(bytes.length).put(bytes);
+            }
+        }
+        for (long value : trailing) {
+            record.putLong(value);
+        }
+        record.putInt(0, record.position() - 4);
+        return Arrays.copyOf(record.array(), record.position());
+    }
+}
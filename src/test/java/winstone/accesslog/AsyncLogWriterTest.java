@@ -0,0 +1,82 @@
+package winstone.accesslog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import winstone.cmdline.OverflowPolicy;
+
+class AsyncLogWriterTest {
+
+    @Test
+    void dropsAndCountsWhenFull() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter("test", 4, OverflowPolicy.DROP, 1024, 0, out::write);
+        // the writer thread is not running yet, so only the first four lines fit
+        for (int i = 0; i < 10; i++) {
+            byte[] line = ("line" + i + "\n").getBytes(StandardCharsets.UTF_8);
+            writer.publish(line, line.length);
+        }
+        assertEquals(6, writer.getDroppedCount());
+
+        writer.start();
+        writer.close(5000);
+        assertEquals("line0\nline1\nline2\nline3\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void spillsOnCallerThreadWhenFull() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter("test", 2, OverflowPolicy.SPILL, 1024, 0, out::write);
+        for (int i = 0; i < 6; i++) {
+            byte[] line = ("line" + i + "\n").getBytes(StandardCharsets.UTF_8);
+            writer.publish(line, line.length);
+        }
+        // a capacity of two is two slots
+        assertEquals("line2\nline3\nline4\nline5\n", out.toString(StandardCharsets.UTF_8));
+
+        writer.start();
+        writer.close(5000);
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals("line2\nline3\nline4\nline5\nline0\nline1\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void keepsWritingWhenOutputThrows() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter.Output output = (bytes, offset, length) -> {
+            if (bytes[offset] == '!') {
+                throw new IllegalStateException("broken");
+            }
+            out.write(bytes, offset, length);
+        };
+        // lines longer than the batch are written one by one
+        AsyncLogWriter writer = new AsyncLogWriter("test", 2, OverflowPolicy.BLOCK, 1, 0, output);
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            byte[] line = ((i % 3 == 0 ? "!" : "") + "line" + i + "\n").getBytes(StandardCharsets.UTF_8);
+            writer.publish(line, line.length);
+        }
+        writer.close(5000);
+        assertEquals(
+                "line1\nline2\nline4\nline5\nline7\nline8\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesLinesPublishedAfterClose() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter("test", 16, OverflowPolicy.BLOCK, 1024, 0, out::write);
+        writer.start();
+        byte[] before = "before\n".getBytes(StandardCharsets.UTF_8);
+        writer.publish(before, before.length);
+        writer.close(5000);
+
+        // the ring has free slots, but nobody would drain them any more
+        for (int i = 0; i < 3; i++) {
+            byte[] line = ("after" + i + "\n").getBytes(StandardCharsets.UTF_8);
+            writer.publish(line, line.length);
+        }
+        assertEquals("before\nafter0\nafter1\nafter2\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
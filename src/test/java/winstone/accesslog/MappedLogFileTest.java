@@ -0,0 +1,111 @@
+package winstone.accesslog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import winstone.cmdline.RotationInterval;
+
+class MappedLogFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendsAfterPaddingAndTruncatesOnClose() throws Exception {
+        Path file = dir.resolve("access.log");
+        // what a crash leaves behind: data followed by the zeros of the mapped chunk, and the marker
+        Files.write(file, new byte[] {'a', '\n', 0, 0, 0, 0});
+        Files.write(dir.resolve(".access.log.mapped"), new byte[0]);
+
+        MappedLogFile log = new MappedLogFile(file, 16, -1, RotationInterval.NONE, -1, false);
+        byte[] line = "spans more than one chunk\n".getBytes(StandardCharsets.UTF_8);
+        log.write(line, 0, line.length);
+        log.close();
+
+        assertEquals("a\nspans more than one chunk\n", Files.readString(file));
+        assertFalse(Files.exists(dir.resolve(".access.log.mapped")));
+    }
+
+    @Test
+    void keepsTrailingZerosOfCleanlyClosedFile() throws Exception {
+        Path file = dir.resolve("access.bin");
+        // a binary record ends with the bytes read, which are 0 for most GET requests
+        byte[] first = record("/first");
+        byte[] second = record("/second");
+        MappedLogFile log = new MappedLogFile(file, 4096, -1, RotationInterval.NONE, -1, false);
+        log.write(first, 0, first.length);
+        log.close();
+        log = new MappedLogFile(file, 4096, -1, RotationInterval.NONE, -1, false);
+        log.write(second, 0, second.length);
+        log.close();
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            assertEquals("/first", AccessLogRecord.read(in).getPath());
+            AccessLogRecord record = AccessLogRecord.read(in);
+            assertEquals("/second", record.getPath());
+            assertEquals(0, record.getBytesIn());
+            assertNull(AccessLogRecord.read(in));
+        }
+    }
+
+    private static byte[] record(String path) {
+        ByteBuffer record = ByteBuffer.allocate(256);
+        record.putInt(0).put((byte) BinaryAccessLogFormat.VERSION).putLong(1_700_000_000_000L).putInt(200).putLong(0);
+        for (String value : new String[] {"127.0.0.1", null, "GET", path, "HTTP/1.1", null, null, null}) {
+            if (value == null) {
+                record.putInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                record.putInt(bytes.length).put(bytes);
+            }
+        }
+        record.putLong(1500).putLong(0);
+        record.putInt(0, record.position() - 4);
+        return Arrays.copyOf(record.array(), record.position());
+    }
+
+    @Test
+    void concurrentWritersAndRotation() throws Exception {
+        Path file = dir.resolve("access.log");
+        MappedLogFile log = new MappedLogFile(file, 4096, 64 * 1024, RotationInterval.NONE, -1, false);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    byte[] line = ("thread " + id + " line " + i + "\n").getBytes(StandardCharsets.UTF_8);
+                    try {
+                        log.write(line, 0, line.length);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        long lines = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path segment : (Iterable<Path>) files::iterator) {
+                String content = Files.readString(segment);
+                assertEquals(-1, content.indexOf('\0'), segment.toString());
+                lines += content.lines().count();
+            }
+        }
+        assertEquals(40000, lines);
+    }
+}
@@ -0,0 +1,36 @@
+package winstone.accesslog;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PathPrefixTrieTest {
+
+    @Test
+    void matchesPrefixes() {
+        PathPrefixTrie trie = new PathPrefixTrie();
+        trie.add("/static/");
+        trie.add("/health");
+        trie.add("/café/");
+        assertTrue(trie.matches("/static/app.js"));
+        assertTrue(trie.matches("/static/"));
+        assertTrue(trie.matches("/health"));
+        assertTrue(trie.matches("/healthz"));
+        assertTrue(trie.matches("/café/menu"));
+        assertFalse(trie.matches("/static"));
+        assertFalse(trie.matches("/app/static/x"));
+        assertFalse(trie.matches("/cafe/menu"));
+        assertFalse(trie.matches(""));
+    }
+
+    @Test
+    void emptyPrefixMatchesEverything() {
+        PathPrefixTrie trie = new PathPrefixTrie();
+        assertTrue(trie.isEmpty());
+        assertFalse(trie.matches("/"));
+        trie.add("");
+        assertTrue(trie.matches(""));
+        assertTrue(trie.matches("/anything"));
+    }
+}
@@ -0,0 +1,55 @@
+package winstone.accesslog;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.jupiter.api.Test;
+import winstone.AbstractWinstoneTest;
+import winstone.Launcher;
+
+class RollupAccessLoggerTest extends AbstractWinstoneTest {
+
+    @Test
+    void normalize() {
+        assertEquals("/", RollupAccessLogger.normalize("", 2));
+        assertEquals("/", RollupAccessLogger.normalize("/", 2));
+        assertEquals("/job/{id}", RollupAccessLogger.normalize("/job/1234/console", 2));
+        assertEquals("/job/build", RollupAccessLogger.normalize("/job/build/42", 2));
+        assertEquals("/static/{id}", RollupAccessLogger.normalize("/static/3f2a9c1e0b7d4e55/app.js", 2));
+        assertEquals("/static/cafe", RollupAccessLogger.normalize("/static/cafe", 3));
+        assertEquals("/", RollupAccessLogger.normalize("/a", 0));
+    }
+
+    @Test
+    void writesIntervalOnStop() throws Exception {
+        Path logFile = Paths.get("target/test-rollup.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", RollupAccessLogger.class.getName());
+        args.put("rollupAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("rollupAccessLogger.interval", "3600");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        for (int i = 0; i < 3; i++) {
+            makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        }
+        // the rest of the interval is written when the logger stops
+        winstone.shutdown();
+        assertThat(
+                Files.readString(logFile, StandardCharsets.UTF_8),
+                containsString("{\"method\":\"GET\",\"path\":\"/examples/CountRequestsServlet\","
+                        + "\"status\":\"2xx\",\"count\":3,"));
+    }
+}
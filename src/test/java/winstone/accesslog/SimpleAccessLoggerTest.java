@@ -1,8 +1,12 @@
 package winstone.accesslog;
 
 import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.io.DataInputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -10,6 +14,7 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.server.ServerConnector;
 import org.junit.jupiter.api.Test;
 import winstone.AbstractWinstoneTest;
@@ -47,4 +52,184 @@ class SimpleAccessLoggerTest extends AbstractWinstoneTest {
                 .pollInterval(Duration.ofMillis(100))
                 .untilAsserted(() -> assertEquals(expected, Files.readString(logFile, StandardCharsets.UTF_8)));
     }
+
+    @Test
+    void unknownTokensAreKeptVerbatim() throws Exception {
+        Path logFile = Paths.get("target/test-literal.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("simpleAccessLogger.format", "[###status###] ###unknown### ##\"###uriLine###\" ###referer###");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        String expected = String.format("[200] ###unknown### ##\"GET /examples/CountRequestsServlet HTTP/1.1\" -%n");
+        await().atMost(Duration.ofSeconds(5))
+                .pollInterval(Duration.ofMillis(100))
+                .untilAsserted(() -> assertEquals(expected, Files.readString(logFile, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void asyncWriter() throws Exception {
+        Path logFile = Paths.get("target/test-async.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("simpleAccessLogger.format", "###ip### - ###user### ###uriLine### ###status###");
+        args.put("simpleAccessLogger.async", "true");
+        args.put("simpleAccessLogger.flushInterval", "10");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        String expected = String.format("127.0.0.1 - - GET /examples/CountRequestsServlet HTTP/1.1 200%n");
+        await().atMost(Duration.ofSeconds(5))
+                .pollInterval(Duration.ofMillis(100))
+                .untilAsserted(() -> assertEquals(expected, Files.readString(logFile, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void timingAndProtocolTokens() throws Exception {
+        Path logFile = Paths.get("target/test-timing.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put(
+                "simpleAccessLogger.format",
+                "###latency### ###queued### ###bytesIn### ###streamId### ###tlsProtocol### ###tlsCipher###");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        await().atMost(Duration.ofSeconds(5))
+                .pollInterval(Duration.ofMillis(100))
+                .untilAsserted(() -> assertThat(
+                        Files.readString(logFile, StandardCharsets.UTF_8),
+                        matchesPattern("\\d+ \\d+ 0 - - -\\R")));
+    }
+
+    @Test
+    void filtersAndSamples() throws Exception {
+        Path logFile = Paths.get("target/test-filter.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("simpleAccessLogger.format", "###uriLine### ###status###");
+        args.put("simpleAccessLogger.excludePaths", "/examples/Count, /examples/missing");
+        args.put("simpleAccessLogger.sampleRate", "2");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        for (int i = 0; i < 3; i++) {
+            makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+            makeRequest("http://localhost:" + port + "/examples/hello/world", Protocol.HTTP_1);
+        }
+        // excluded, but errors are always logged
+        makeRequest(null, "http://localhost:" + port + "/examples/missing", HttpStatus.NOT_FOUND_404, Protocol.HTTP_1);
+        String expected = String.format("GET /examples/hello/world HTTP/1.1 200%n"
+                + "GET /examples/hello/world HTTP/1.1 200%n"
+                + "GET /examples/missing HTTP/1.1 404%n");
+        await().atMost(Duration.ofSeconds(5))
+                .pollInterval(Duration.ofMillis(100))
+                .untilAsserted(() -> assertEquals(expected, Files.readString(logFile, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void includesStatusAndMethods() throws Exception {
+        Path logFile = Paths.get("target/test-include.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("simpleAccessLogger.format", "###uriLine### ###status###");
+        args.put("simpleAccessLogger.includeMethods", "get");
+        args.put("simpleAccessLogger.includeStatus", "2xx");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        makeRequest("http://localhost:" + port + "/examples/hello/world", Protocol.HTTP_1);
+        // an explicit status include applies to errors too
+        makeRequest(null, "http://localhost:" + port + "/examples/missing", HttpStatus.NOT_FOUND_404, Protocol.HTTP_1);
+        makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        String expected = String.format("GET /examples/hello/world HTTP/1.1 200%n"
+                + "GET /examples/CountRequestsServlet HTTP/1.1 200%n");
+        await().atMost(Duration.ofSeconds(5))
+                .pollInterval(Duration.ofMillis(100))
+                .untilAsserted(() -> assertEquals(expected, Files.readString(logFile, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void jsonFormat() throws Exception {
+        Path logFile = Paths.get("target/test-json.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("simpleAccessLogger.format", "json");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        await().atMost(Duration.ofSeconds(5))
+                .pollInterval(Duration.ofMillis(100))
+                .untilAsserted(() -> assertThat(
+                        Files.readString(logFile, StandardCharsets.UTF_8),
+                        matchesPattern("\\{\"time\":\"\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}[^\"]+\","
+                                + "\"ip\":\"127\\.0\\.0\\.1\",\"user\":null,\"method\":\"GET\","
+                                + "\"path\":\"/examples/CountRequestsServlet\",\"protocol\":\"HTTP/1\\.1\","
+                                + "\"status\":200,\"size\":\\d+,\"referer\":null,\"userAgent\":\"[^\"]*\","
+                                + "\"forwardedFor\":null,\"latency\":\\d+,\"bytesIn\":0}\n")));
+    }
+
+    @Test
+    void binaryFormat() throws Exception {
+        Path logFile = Paths.get("target/test-binary.log");
+        Files.deleteIfExists(logFile);
+
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        args.put("httpPort", "0");
+        args.put("accessLoggerClassName", SimpleAccessLogger.class.getName());
+        args.put("simpleAccessLogger.file", logFile.toAbsolutePath().toString());
+        args.put("simpleAccessLogger.format", "binary");
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        makeRequest("http://localhost:" + port + "/examples/CountRequestsServlet", Protocol.HTTP_1);
+        await().atMost(Duration.ofSeconds(5)).until(() -> Files.size(logFile) > 0);
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(logFile))) {
+            AccessLogRecord record = AccessLogRecord.read(in);
+            assertEquals("127.0.0.1", record.getIp());
+            assertNull(record.getUser());
+            assertEquals("GET", record.getMethod());
+            assertEquals("/examples/CountRequestsServlet", record.getPath());
+            assertEquals("HTTP/1.1", record.getProtocol());
+            assertEquals(200, record.getStatus());
+            assertNull(AccessLogRecord.read(in));
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package winstone.accesslog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+
+class TimestampCacheTest {
+
+    @Test
+    void matchesSimpleDateFormat() {
+        // the access log used SimpleDateFormat before, the output must not change
+        TimestampCache cache = new TimestampCache("dd/MMM/yyyy:HH:mm:ss Z");
+        SimpleDateFormat legacy = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
+        for (long time : new long[] {0L, 1_000_000_000_000L, 1_700_000_000_123L, System.currentTimeMillis()}) {
+            assertEquals(legacy.format(new Date(time)), cache.format(time));
+        }
+    }
+
+    @Test
+    void formatsEachSecondOnce() {
+        TimestampCache cache = new TimestampCache("HH:mm:ss");
+        String first = cache.format(1_700_000_000_001L);
+        assertSame(first, cache.format(1_700_000_000_999L));
+        String next = cache.format(1_700_000_001_000L);
+        assertEquals(1, Integer.parseInt(next.substring(6)) - Integer.parseInt(first.substring(6)));
+        // an older second is still formatted correctly, but does not replace the newer one
+        assertEquals(first, cache.format(1_700_000_000_500L));
+        assertSame(next, cache.format(1_700_000_001_500L));
+    }
+}
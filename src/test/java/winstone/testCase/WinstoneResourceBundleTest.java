@@ -35,6 +35,23 @@ class WinstoneResourceBundleTest {
                 "Two tokens");
     }
 
+    @Test
+    void testGetStringWithParameters() {
+        WinstoneResourceBundle resources = new WinstoneResourceBundle("winstone.LocalStrings");
+        assertEquals(
+                "Winstone running: controlPort=8080",
+                resources.getString("Launcher.StartupOK", new Object[] {"Winstone", 8080}),
+                "Two parameters");
+        assertEquals(
+                "(null) running: controlPort=[#1]",
+                resources.getString("Launcher.StartupOK", (Object) null),
+                "Null parameter, missing parameter");
+        assertEquals(
+                "[#1] running: controlPort=x",
+                resources.getString("Launcher.StartupOK", new Object[] {"[#1]", "x"}),
+                "Parameters are not substituted again");
+    }
+
     //    static void testSpeed() throws Exception {
     //        String tokens[][] = new String[20][2];
     //        for (int n = 0; n < tokens.length; n++) {
@@ -6,130 +6,230 @@
  */
 package winstone.testCase.load;
 
-import java.net.http.HttpClient;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.server.ServerConnector;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import winstone.AbstractWinstoneTest;
+import winstone.Launcher;
 import winstone.Logger;
 import winstone.WinstoneResourceBundle;
 import winstone.cmdline.Option;
 
 /**
  * This class is an attempt to benchmark performance under load for winstone. It
- * works by hitting a supplied URL with parallel threads (with keep-alives or
- * without) at an escalating rate, and counting the no of failures.
+ * sends requests at a constant arrival rate, escalating in steps, and reports the
+ * throughput, the error count and the latency percentiles of each step, followed by
+ * the highest rate that was sustained within the latency target.
  *
- * It uses {@link java.net.http.HttpClient} for the connection.
+ * <p>The load is open-model: requests are sent when they are due, not when the
+ * previous one completed, and their latency is measured from the time they were due.
+ * A server (or client) stall therefore shows up in the latencies of every request
+ * that should have been sent meanwhile, instead of silently lowering the rate
+ * (coordinated omission).
+ *
+ * <p>Unless a {@code --url} is given, the test webapp is served by an embedded
+ * {@link Launcher}, over HTTP/1.1 or HTTP/2 (TLS) depending on {@code --protocol}.
  *
  * @author <a href="mailto:rick_knowles@hotmail.com">Rick Knowles</a>
  */
 @Disabled("Intended to be run manually")
-public class LoadTest {
+public class LoadTest extends AbstractWinstoneTest {
+    private static final String LOCAL_RESOURCE_FILE = "winstone.testCase.load.LocalStrings";
+
+    /** A step whose throughput falls below this share of the target rate is saturated. */
+    private static final double SUSTAINED_RATIO = 0.95;
+
+    private final WinstoneResourceBundle resources = new WinstoneResourceBundle(LOCAL_RESOURCE_FILE);
     private String url;
-    private boolean useKeepAlives;
-    private int startThreads;
-    private int endThreads;
-    private int stepSize;
+    private Protocol protocol;
+    private int startRate;
+    private int endRate;
+    private int stepRate;
     private long stepPeriod;
-    private long gracePeriod;
-    private long successTimeTotal;
-    private int successCount;
-    private WinstoneResourceBundle resources;
-
-    private static String LOCAL_RESOURCE_FILE = "winstone.testCase.load.LocalStrings";
-
-    public LoadTest(
-            WinstoneResourceBundle resources,
-            String url,
-            boolean useKeepAlives,
-            int startThreads,
-            int endThreads,
-            int stepSize,
-            long stepPeriod,
-            long gracePeriod) {
-        this.resources = resources;
-        this.url = url;
-        this.useKeepAlives = useKeepAlives;
-        this.startThreads = startThreads;
-        this.endThreads = endThreads;
-        this.stepSize = stepSize;
-        this.stepPeriod = stepPeriod;
-        this.gracePeriod = gracePeriod;
+    private long warmupPeriod;
+    private long timeout;
+    private long maxP99;
+    private int maxConnections;
+
+    /** What happened during one step. */
+    private static final class StepResult {
+        final int rate;
+        final long successes;
+        final long errors;
+        final double throughput;
+        final LatencyHistogram latencies;
+
+        StepResult(int rate, long successes, long errors, double throughput, LatencyHistogram latencies) {
+            this.rate = rate;
+            this.successes = successes;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.latencies = latencies;
+        }
+    }
+
+    void configure(Map<String, String> options) {
+        this.url = Option.stringArg(options, "url", null);
+        this.protocol = "http2".equalsIgnoreCase(Option.stringArg(options, "protocol", "http1"))
+                ? Protocol.HTTP_2
+                : Protocol.HTTP_1;
+        this.startRate = Option.intArg(options, "startRate", 500);
+        this.endRate = Option.intArg(options, "endRate", 5000);
+        this.stepRate = Math.max(1, Option.intArg(options, "stepRate", 500));
+        this.stepPeriod = Option.intArg(options, "stepPeriod", 10000);
+        this.warmupPeriod = Option.intArg(options, "warmupPeriod", 10000);
+        this.timeout = Option.intArg(options, "timeout", 10000);
+        this.maxP99 = Option.intArg(options, "maxP99", 100);
+        this.maxConnections = Option.intArg(options, "maxConnections", 64);
 
         Logger.log(
                 Level.INFO,
                 resources,
                 "LoadTest.Config",
-                this.url,
-                this.useKeepAlives + "",
-                this.startThreads + "",
-                this.endThreads + "",
-                this.stepSize + "",
-                this.stepPeriod + "",
-                this.gracePeriod + "");
+                this.url == null ? "embedded" : this.url,
+                this.protocol,
+                this.startRate,
+                this.endRate,
+                this.stepRate,
+                this.stepPeriod,
+                this.warmupPeriod,
+                this.maxP99);
     }
 
     @Test
-    void test() throws InterruptedException {
-        HttpClient client = null;
+    void http1() throws Exception {
+        configure(Map.of("protocol", "http1"));
+        run();
+    }
 
-        // Loop through in steps
-        for (int n = this.startThreads; n <= this.endThreads; n += this.stepSize) {
-            if (this.useKeepAlives) {
-                client = HttpClient.newHttpClient();
-            }
+    @Test
+    void http2() throws Exception {
+        configure(Map.of("protocol", "http2"));
+        run();
+    }
 
-            // Spawn the threads
-            int noOfSeconds = (int) this.stepPeriod / 1000;
-            List<LoadTestThread> threads = new ArrayList<>();
-            for (int m = 0; m < n; m++) {
-                threads.add(new LoadTestThread(this.url, this, this.resources, client, noOfSeconds - 1));
+    /**
+     * Runs the warmup and the steps, and returns the highest rate sustained without errors
+     * and within the p99 target, or 0 if none was.
+     */
+    int run() throws Exception {
+        String target = this.url == null ? startEmbedded() : this.url;
+        HttpClient client = getHttpClient();
+        client.setMaxConnectionsPerDestination(this.maxConnections);
+        client.setMaxRequestsQueuedPerDestination(Integer.MAX_VALUE);
+        try {
+            if (this.warmupPeriod > 0) {
+                runStep(client, target, this.startRate, this.warmupPeriod);
             }
-
-            // Sleep for step period
-            Thread.sleep(this.stepPeriod + gracePeriod);
-
-            // int errorCount = (noOfSeconds * n) - this.successCount;
-            Long averageSuccessTime = this.successCount == 0 ? null : this.successTimeTotal / this.successCount;
-
-            // Write out results
-            Logger.log(
-                    Level.INFO,
-                    resources,
-                    "LoadTest.LineResult",
-                    n + "",
-                    this.successCount + "",
-                    ((noOfSeconds * n) - this.successCount) + "",
-                    averageSuccessTime + "");
-
-            // Close threads
-            for (LoadTestThread thread : threads) {
-                thread.destroy();
+            int sustained = 0;
+            for (int rate = this.startRate; rate <= this.endRate; rate += this.stepRate) {
+                StepResult result = runStep(client, target, rate, this.stepPeriod);
+                LatencyHistogram latencies = result.latencies;
+                Logger.log(
+                        Level.INFO,
+                        resources,
+                        "LoadTest.LineResult",
+                        rate,
+                        String.format(Locale.ROOT, "%.1f", result.throughput),
+                        result.successes,
+                        result.errors,
+                        millis(latencies.getValueAtPercentile(50)),
+                        millis(latencies.getValueAtPercentile(99)),
+                        millis(latencies.getValueAtPercentile(99.9)),
+                        millis(latencies.getMax()));
+                if (result.errors > 0
+                        || result.throughput < result.rate * SUSTAINED_RATIO
+                        || latencies.getValueAtPercentile(99) > TimeUnit.MILLISECONDS.toMicros(this.maxP99)) {
+                    break;
+                }
+                sustained = rate;
             }
+            Logger.log(Level.INFO, resources, "LoadTest.Capacity", sustained, this.maxP99);
+            return sustained;
+        } finally {
+            client.stop();
+        }
+    }
 
-            this.successTimeTotal = 0;
-            this.successCount = 0;
+    private String startEmbedded() throws Exception {
+        Map<String, String> args = new HashMap<>();
+        args.put("warfile", "target/test-classes/test.war");
+        args.put("prefix", "/examples");
+        if (this.protocol == Protocol.HTTP_2) {
+            args.put("httpPort", "-1");
+            args.put("http2Port", "0");
+            args.put("http2ListenAddress", "localhost");
+            args.put("httpsKeyStore", "src/ssl/wildcard.jks");
+            args.put("httpsKeyStorePassword", "changeit");
+        } else {
+            args.put("httpPort", "0");
+            args.put("httpListenAddress", "localhost");
         }
+        winstone = new Launcher(args);
+        int port = ((ServerConnector) winstone.server.getConnectors()[0]).getLocalPort();
+        String scheme = this.protocol == Protocol.HTTP_2 ? "https" : "http";
+        return scheme + "://localhost:" + port + "/examples/hello/load";
     }
 
-    public void incTimeTotal(long amount) {
-        this.successTimeTotal += amount;
+    /**
+     * Sends {@code rate} requests per second for {@code period} milliseconds, each at its
+     * scheduled time whatever the state of the previous ones, then waits for the stragglers.
+     */
+    private StepResult runStep(HttpClient client, String target, int rate, long period) throws InterruptedException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        LongAdder successes = new LongAdder();
+        LongAdder errors = new LongAdder();
+        int count = (int) (rate * period / 1000);
+        CountDownLatch done = new CountDownLatch(count);
+        HttpVersion version = this.protocol == Protocol.HTTP_2 ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            long due = start + i * interval;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Request request =
+                    client.newRequest(target).version(version).timeout(this.timeout, TimeUnit.MILLISECONDS);
+            request.send(result -> {
+                // measured from when the request was due, not from when it could be sent
+                long latency = System.nanoTime() - due;
+                if (result.isFailed() || result.getResponse().getStatus() >= 400) {
+                    errors.increment();
+                } else {
+                    successes.increment();
+                    latencies.record(TimeUnit.NANOSECONDS.toMicros(latency));
+                }
+                done.countDown();
+            });
+        }
+        if (!done.await(this.timeout + 1000, TimeUnit.MILLISECONDS)) {
+            Logger.log(Level.WARNING, resources, "LoadTest.Incomplete", done.getCount());
+        }
+        long elapsed = Math.max(System.nanoTime() - start, TimeUnit.MILLISECONDS.toNanos(period));
+        double throughput = successes.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        return new StepResult(rate, successes.sum(), errors.sum() + done.getCount(), throughput, latencies);
     }
 
-    public void incSuccessCount() {
-        this.successCount++;
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.2f", micros / 1000.0);
     }
 
     public static void main(String[] args) throws Exception {
-        WinstoneResourceBundle resources = new WinstoneResourceBundle(LOCAL_RESOURCE_FILE);
-
         // Loop for args
         Map<String, String> options = new HashMap<>();
-        // String operation = "";
         for (String option : args) {
             if (option.startsWith("--")) {
                 int equalPos = option.indexOf('=');
@@ -139,31 +239,19 @@ public class LoadTest {
             }
         }
 
-        if (options.size() == 0) {
-            printUsage(resources);
+        LoadTest lt = new LoadTest();
+        if (options.containsKey("help")) {
+            printUsage(lt.resources);
             return;
         }
         Logger.setCurrentDebugLevel(Integer.parseInt(Option.stringArg(options, "debug", "5")));
 
-        String url = Option.stringArg(options, "url", "http://localhost:8080/");
-        boolean keepAlive = Option.booleanArg(options, "keepAlive", true);
-        String startThreads = Option.stringArg(options, "startThreads", "20");
-        String endThreads = Option.stringArg(options, "endThreads", "1000");
-        String stepSize = Option.stringArg(options, "stepSize", "20");
-        String stepPeriod = Option.stringArg(options, "stepPeriod", "5000");
-        String gracePeriod = Option.stringArg(options, "gracePeriod", "5000");
-
-        LoadTest lt = new LoadTest(
-                resources,
-                url,
-                keepAlive,
-                Integer.parseInt(startThreads),
-                Integer.parseInt(endThreads),
-                Integer.parseInt(stepSize),
-                Integer.parseInt(stepPeriod),
-                Integer.parseInt(gracePeriod));
-
-        lt.test();
+        lt.configure(options);
+        try {
+            lt.run();
+        } finally {
+            lt.tearDown();
+        }
     }
 
     /**
@@ -0,0 +1,193 @@
+package winstone.testCase.startup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import winstone.Launcher;
+import winstone.StartupTimeline;
+import winstone.cmdline.Option;
+
+/**
+ * Measures the time to the first successful request for WARs of increasing size. Each WAR is
+ * started in-process, first with an empty webroot (cold, the WAR is extracted) and then with the
+ * webroot left by the previous start (warm). Every run reports the phases of the
+ * {@link StartupTimeline} along with the argument parsing and the first response, and all runs are
+ * written as JSON to {@code results.json} so they can be compared across releases:
+ *
+ * <pre>{@code
+ * {"timestamp":"...","java":"21.0.2","processors":8,"runs":[
+ *  {"war":"small","entries":200,"jars":5,"annotatedClasses":20,"warBytes":845012,"mode":"cold","totalMs":812.4,
+ *   "phases":[{"name":"parse arguments","startMs":0.0,"durationMs":3.1},...]}]}
+ * }</pre>
+ *
+ * Times are in milliseconds from the start of the argument parsing.
+ */
+@Disabled("Intended to be run manually")
+public class StartupBenchmark {
+    private static final SyntheticWar[] WARS = {
+        new SyntheticWar("small", 200, 5, 20), new SyntheticWar("medium", 5000, 50, 200),
+        new SyntheticWar("large", 20000, 200, 1000),
+    };
+
+    private static final Duration FIRST_RESPONSE_TIMEOUT = Duration.ofMinutes(2);
+
+    @Test
+    void startup() throws Exception {
+        run(Paths.get("target/startup-benchmark"), 3);
+    }
+
+    static Path run(Path dir, int repetitions) throws Exception {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"timestamp\":\"").append(Instant.now()).append('"');
+        json.append(",\"java\":\"").append(System.getProperty("java.version")).append('"');
+        json.append(",\"processors\":").append(Runtime.getRuntime().availableProcessors());
+        json.append(",\"runs\":[");
+        boolean first = true;
+        for (SyntheticWar war : WARS) {
+            Path warFile = war.build(dir);
+            Path webroot = dir.resolve(war.name + "-webroot");
+            for (int i = 0; i < repetitions; i++) {
+                deleteRecursive(webroot);
+                for (String mode : new String[] {"cold", "warm"}) {
+                    if (!first) {
+                        json.append(",\n");
+                    }
+                    first = false;
+                    runOnce(war, warFile, webroot, mode, json);
+                }
+            }
+        }
+        json.append("]}\n");
+        Path results = dir.resolve("results.json");
+        Files.writeString(results, json);
+        System.out.println("Startup benchmark results written to " + results.toAbsolutePath());
+        return results;
+    }
+
+    private static void runOnce(SyntheticWar war, Path warFile, Path webroot, String mode, StringBuilder json)
+            throws Exception {
+        long start = System.nanoTime();
+        Map<String, String> args = Launcher.getArgsFromCommandLine(new String[] {
+            "--warfile=" + warFile,
+            "--webroot=" + webroot,
+            "--prefix=/",
+            "--httpPort=0",
+            "--httpListenAddress=localhost",
+        });
+        long parsed = System.nanoTime();
+        Launcher launcher = new Launcher(args);
+        long firstResponseStart;
+        long end;
+        StartupTimeline timeline;
+        try {
+            timeline = launcher.server.getBean(StartupTimeline.class);
+            int port = ((ServerConnector) launcher.server.getConnectors()[0]).getLocalPort();
+            firstResponseStart = System.nanoTime();
+            awaitFirstResponse("http://localhost:" + port + war.firstServletPath());
+            end = System.nanoTime();
+        } finally {
+            launcher.shutdown();
+        }
+
+        json.append("{\"war\":\"").append(war.name).append('"');
+        json.append(",\"entries\":").append(war.entries);
+        json.append(",\"jars\":").append(war.jars);
+        json.append(",\"annotatedClasses\":").append(war.annotatedClasses);
+        json.append(",\"warBytes\":").append(Files.size(warFile));
+        json.append(",\"mode\":\"").append(mode).append('"');
+        json.append(",\"totalMs\":").append(millis(end - start));
+        json.append(",\"phases\":[");
+        phase(json, "parse arguments", 0, parsed - start);
+        for (StartupTimeline.Phase phase : timeline.getPhases()) {
+            json.append(',');
+            phase(
+                    json,
+                    phase.getName(),
+                    timeline.getOriginNanos() + phase.getStartNanos() - start,
+                    phase.getDurationNanos());
+        }
+        json.append(',');
+        phase(json, "first response", firstResponseStart - start, end - firstResponseStart);
+        json.append("]}");
+        System.out.printf(
+                Locale.ROOT,
+                "%-8s %-4s %8.1fms  %s%n",
+                war.name,
+                mode,
+                (end - start) / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                timeline.getSummary());
+    }
+
+    private static void phase(StringBuilder json, String name, long startNanos, long durationNanos) {
+        json.append("{\"name\":\"").append(name).append('"');
+        json.append(",\"startMs\":").append(millis(startNanos));
+        json.append(",\"durationMs\":").append(durationNanos < 0 ? "null" : millis(durationNanos));
+        json.append('}');
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static void awaitFirstResponse(String url) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        long deadline = System.nanoTime() + FIRST_RESPONSE_TIMEOUT.toNanos();
+        while (true) {
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("No successful response from " + url + " within " + FIRST_RESPONSE_TIMEOUT);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void deleteRecursive(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String option : argv) {
+            if (option.startsWith("--")) {
+                int equalPos = option.indexOf('=');
+                String paramName = option.substring(2, equalPos == -1 ? option.length() : equalPos);
+                String paramValue = (equalPos == -1 ? "true" : option.substring(equalPos + 1));
+                options.put(paramName, paramValue);
+            }
+        }
+        run(
+                Paths.get(Option.stringArg(options, "dir", "target/startup-benchmark")),
+                Option.intArg(options, "repetitions", 3));
+    }
+}
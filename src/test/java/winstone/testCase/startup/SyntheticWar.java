@@ -0,0 +1,152 @@
+package winstone.testCase.startup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates a WAR of a given shape: static entries, library jars in {@code WEB-INF/lib} and
+ * {@code @WebServlet} classes in {@code WEB-INF/classes} for the annotation scanner to find. The
+ * contents and timestamps only depend on the shape, so the same shape always gives the same file.
+ */
+final class SyntheticWar {
+    private static final long ENTRY_TIME = 1_700_000_000_000L;
+    private static final int ENTRIES_PER_JAR = 50;
+
+    final String name;
+    final int entries;
+    final int jars;
+    final int annotatedClasses;
+
+    SyntheticWar(String name, int entries, int jars, int annotatedClasses) {
+        this.name = name;
+        this.entries = entries;
+        this.jars = jars;
+        this.annotatedClasses = Math.max(1, annotatedClasses);
+    }
+
+    /** The path of a servlet that is only initialized by the first request. */
+    String firstServletPath() {
+        return "/generated/Servlet0";
+    }
+
+    /**
+     * Writes the WAR into {@code dir}, unless it is already there.
+     */
+    Path build(Path dir) throws IOException {
+        Path war = dir.resolve(name + ".war");
+        if (Files.exists(war)) {
+            return war;
+        }
+        Files.createDirectories(dir);
+        Path classes = compileServlets(dir.resolve(name + "-classes"));
+        Path tmp = Files.createTempFile(dir, name, ".tmp");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(tmp))) {
+            put(out, "WEB-INF/web.xml", webXml());
+            put(out, "index.html", ("<html><body>" + name + "</body></html>").getBytes(StandardCharsets.UTF_8));
+            Random random = new Random(entries);
+            for (int i = 0; i < entries; i++) {
+                put(out, "static/" + (i / 100) + "/file-" + i + ".txt", text(random, 2048));
+            }
+            for (int i = 0; i < jars; i++) {
+                put(out, "WEB-INF/lib/lib-" + i + ".jar", jar(i, random));
+            }
+            try (Stream<Path> files = Files.walk(classes)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    String entry = classes.relativize(file).toString().replace('\\', '/');
+                    put(out, "WEB-INF/classes/" + entry, Files.readAllBytes(file));
+                }
+            }
+        }
+        Files.move(tmp, war);
+        return war;
+    }
+
+    private Path compileServlets(Path dir) throws IOException {
+        Path sources = dir.resolve("src/generated");
+        Path classes = dir.resolve("classes");
+        Files.createDirectories(sources);
+        Files.createDirectories(classes);
+        List<String> compilerArgs = new ArrayList<>(List.of(
+                "-d",
+                classes.toString(),
+                "-classpath",
+                System.getProperty("java.class.path"),
+                "-proc:none",
+                "-implicit:none"));
+        for (int i = 0; i < annotatedClasses; i++) {
+            Path source = sources.resolve("Servlet" + i + ".java");
+            Files.writeString(
+                    source,
+                    "package generated;\n"
+                            + "@jakarta.servlet.annotation.WebServlet(\"/generated/Servlet" + i + "\")\n"
+                            + "public class Servlet" + i + " extends jakarta.servlet.http.HttpServlet {\n"
+                            + "  @Override\n"
+                            + "  protected void doGet(jakarta.servlet.http.HttpServletRequest req,\n"
+                            + "      jakarta.servlet.http.HttpServletResponse resp) throws java.io.IOException {\n"
+                            + "    resp.getWriter().print(\"" + i + "\");\n"
+                            + "  }\n"
+                            + "}\n");
+            compilerArgs.add(source.toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null || compiler.run(null, null, null, compilerArgs.toArray(new String[0])) != 0) {
+            throw new IOException("Failed to compile the servlets of " + name);
+        }
+        return classes;
+    }
+
+    private byte[] webXml() {
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<web-app xmlns=\"https://jakarta.ee/xml/ns/jakartaee\" version=\"5.0\""
+                        + " metadata-complete=\"false\">\n"
+                        + "  <display-name>" + name + "</display-name>\n"
+                        + "</web-app>\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] jar(int index, Random random) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            put(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            for (int i = 0; i < ENTRIES_PER_JAR; i++) {
+                put(out, "lib" + index + "/resource-" + i + ".properties", text(random, 512));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Text that compresses about as well as typical web content. */
+    private static byte[] text(Random random, int length) {
+        String[] words = {"jenkins ", "winstone ", "build ", "job ", "plugin ", "agent ", "queue ", "node\n"};
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]);
+            if (random.nextInt(4) == 0) {
+                text.append(random.nextInt(100000)).append(' ');
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void put(ZipOutputStream out, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ENTRY_TIME);
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+}